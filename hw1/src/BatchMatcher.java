@@ -0,0 +1,131 @@
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs many DNA match queries concurrently against a single, pre-built DNAMatcher.
+ * At most a bounded number of queries are queued at once, and results are handed back as each query finishes.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class BatchMatcher implements AutoCloseable {
+
+	private final DNAMatcher matcher;
+	private final ThreadPoolExecutor executor;
+	private final int maxInFlight;
+
+	private final AtomicLong completed = new AtomicLong();
+	private volatile long startNanos = -1;
+
+	public BatchMatcher(DNAMatcher matcher, int threads, int queueCapacity) {
+		this.matcher = matcher;
+		this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<>());
+		// The queue itself is unbounded, but matchAll never has more than this many queries outstanding,
+		// so at most queueCapacity of them can be waiting for a worker
+		this.maxInFlight = threads + queueCapacity;
+	}
+
+	/**
+	 * Matches every sequence in a batch, blocking until all of them have finished.
+	 * The callback runs on the calling thread, once per sequence, in the order the queries complete.
+	 *
+	 * @param sequences The DNA sequences to be matched against the database
+	 * @param onResult Receives the index of each sequence within the batch along with its result
+	 * @throws InterruptedException If the calling thread is interrupted while waiting for results
+	 */
+	public void matchAll(List<? extends CharSequence> sequences, BiConsumer<Integer, MatchResult> onResult)
+			throws InterruptedException {
+		if(this.startNanos == -1) {
+			this.startNanos = System.nanoTime();
+		}
+		CompletionService<Integer> completion = new ExecutorCompletionService<>(this.executor);
+		MatchResult[] results = new MatchResult[sequences.size()];
+
+		int submitted = 0;
+		int delivered = 0;
+		while(delivered < sequences.size()) {
+			// Keep the queue topped up without letting it grow past its bound
+			while(submitted < sequences.size() && submitted - delivered < this.maxInFlight) {
+				int i = submitted++;
+				CharSequence sequence = sequences.get(i);
+				completion.submit(() -> {
+					results[i] = this.matcher.match(sequence);
+					return i;
+				});
+			}
+
+			Future<Integer> done = completion.take();
+			int i;
+			try {
+				i = done.get();
+			} catch(ExecutionException e) {
+				if(e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+			this.completed.incrementAndGet();
+			delivered++;
+			onResult.accept(i, results[i]);
+			results[i] = null;
+		}
+	}
+
+	/**
+	 * Returns the number of queries waiting for a worker thread
+	 *
+	 * @return A whole number of queued queries
+	 */
+	public int getQueueDepth() {
+		return this.executor.getQueue().size();
+	}
+
+	/**
+	 * Returns the number of queries currently being matched by a worker thread
+	 *
+	 * @return A whole number of running queries
+	 */
+	public int getActiveCount() {
+		return this.executor.getActiveCount();
+	}
+
+	/**
+	 * Returns the total number of queries completed by this batch matcher
+	 *
+	 * @return A whole number of queries
+	 */
+	public long getCompletedCount() {
+		return this.completed.get();
+	}
+
+	/**
+	 * Returns the average rate at which queries have completed since the first batch was submitted
+	 *
+	 * @return The number of queries completed per second
+	 */
+	public double getThroughput() {
+		long start = this.startNanos;
+		if(start == -1) {
+			return 0.0;
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		return seconds > 0 ? this.completed.get() / seconds : 0.0;
+	}
+
+	/**
+	 * Stops the worker threads once any queries still running have finished
+	 */
+	@Override
+	public void close() {
+		this.executor.shutdown();
+	}
+}
@@ -0,0 +1,399 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A single STR column of the profile database, holding one count per person in a contiguous primitive array.
+ * Columns are stored in the narrowest width that fits every count in them.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public abstract class CountColumn {
+
+	/**
+	 * Stores a column of counts in the narrowest primitive array able to hold all of them
+	 *
+	 * @param values The count held by each person, in person order
+	 * @return A column containing the same counts
+	 */
+	public static CountColumn of(int[] values) {
+		int min = 0;
+		int max = 0;
+		for(int v : values) {
+			min = Math.min(min, v);
+			max = Math.max(max, v);
+		}
+		if(min >= 0 && max <= 0xFF) {
+			byte[] data = new byte[values.length];
+			for(int i = 0; i < values.length; i++) {
+				data[i] = (byte) values[i];
+			}
+			return new ByteColumn(data, data.length);
+		}
+		if(min >= 0 && max <= 0xFFFF) {
+			short[] data = new short[values.length];
+			for(int i = 0; i < values.length; i++) {
+				data[i] = (short) values[i];
+			}
+			return new ShortColumn(data, data.length);
+		}
+		return new IntColumn(values.clone(), values.length);
+	}
+
+	/**
+	 * Views a column of packed little-endian counts held in a buffer, such as a region of a memory-mapped file,
+	 * without copying it onto the heap
+	 *
+	 * @param buffer The buffer holding the counts, starting at its position
+	 * @param width The number of bytes used by each count: 1, 2 or 4
+	 * @param rows The number of counts in the column
+	 * @return A column reading its counts directly from the buffer
+	 */
+	public static CountColumn wrap(ByteBuffer buffer, int width, int rows) {
+		if(width != 1 && width != 2 && width != 4) {
+			throw new IllegalArgumentException("Unsupported count width: " + width);
+		}
+		ByteBuffer data = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		data.limit(rows * width);
+		return new BufferColumn(data, width, rows);
+	}
+
+	/**
+	 * Returns the count held by a person
+	 *
+	 * @param row The id of the person
+	 * @return The number of times the person holds this column's STR
+	 */
+	public abstract int get(int row);
+
+	/**
+	 * Returns the number of people in the column
+	 *
+	 * @return A whole number of people
+	 */
+	public abstract int size();
+
+	/**
+	 * Returns the number of bytes used to store each count in this column
+	 *
+	 * @return 1, 2 or 4
+	 */
+	public abstract int width();
+
+	/**
+	 * Adds one to the score of every person in a range of rows whose count equals a value.
+	 * Implementations run a tight loop over their primitive array so the JIT can vectorize it.
+	 *
+	 * @param value The count to compare against
+	 * @param scores The scores to increment, where scores[0] belongs to row {@code from}
+	 * @param from The first row to compare, inclusive
+	 * @param to The last row to compare, exclusive
+	 */
+	public abstract void addMatches(int value, int[] scores, int from, int to);
+
+	/**
+	 * Keeps only the rows of a list whose count equals a value, compacting them to the front of the list in order
+	 *
+	 * @param value The count to compare against
+	 * @param rows The candidate rows, overwritten with the rows kept
+	 * @param size The number of candidate rows at the front of the list
+	 * @return The number of rows kept
+	 */
+	public int filterEqual(int value, int[] rows, int size) {
+		int kept = 0;
+		for(int i = 0; i < size; i++) {
+			int row = rows[i];
+			rows[kept] = row;
+			kept += get(row) == value ? 1 : 0;
+		}
+		return kept;
+	}
+
+	/**
+	 * Adds a count for a new person at the end of the column. Columns grow in place while the count fits their
+	 * width; otherwise the counts are copied into a new, wider column. A column held in a buffer is never copied:
+	 * appended counts go to a small heap column after the buffer, until the column is next copied off the heap.
+	 *
+	 * @param value The count held by the new person
+	 * @return The column now holding the count, which is either this column or its replacement
+	 */
+	public abstract CountColumn append(int value);
+
+	/**
+	 * Copies the counts into a direct buffer outside the Java heap, so the garbage collector never has to trace or
+	 * move them. A column already held in a direct or mapped buffer is returned as it is.
+	 *
+	 * @return A column reading its counts from off-heap memory
+	 */
+	public final CountColumn toOffHeap() {
+		return toOffHeap(new BitSet());
+	}
+
+	/**
+	 * Copies the counts of every row not in a set into a direct buffer outside the Java heap, row by row, so even
+	 * a large column is never copied onto the heap on its way
+	 *
+	 * @param removed The rows to leave out
+	 * @return A column reading the remaining counts, in row order, from off-heap memory
+	 */
+	public CountColumn toOffHeap(BitSet removed) {
+		int width = width();
+		int rows = size() - removed.cardinality();
+		ByteBuffer data = ByteBuffer.allocateDirect(rows * width).order(ByteOrder.LITTLE_ENDIAN);
+		int i = 0;
+		for(int row = 0; row < size(); row++) {
+			if(removed.get(row)) {
+				continue;
+			}
+			switch(width) {
+				case 1 -> data.put(i, (byte) get(row));
+				case 2 -> data.putShort(i * 2, (short) get(row));
+				default -> data.putInt(i * 4, get(row));
+			}
+			i++;
+		}
+		return new BufferColumn(data, width, rows);
+	}
+
+	/**
+	 * Copies this column and one more count into the narrowest array column able to hold them all
+	 */
+	protected CountColumn copyAndAppend(int value) {
+		int[] values = new int[size() + 1];
+		for(int row = 0; row < values.length - 1; row++) {
+			values[row] = get(row);
+		}
+		values[values.length - 1] = value;
+		return of(values);
+	}
+
+	/**
+	 * Picks the capacity to grow an array column to
+	 */
+	private static int grow(int capacity) {
+		return Math.max(capacity + (capacity >> 1), 16);
+	}
+
+	private static final class ByteColumn extends CountColumn {
+
+		private byte[] data;
+		private int size;
+
+		private ByteColumn(byte[] data, int size) {
+			this.data = data;
+			this.size = size;
+		}
+
+		@Override
+		public int get(int row) {
+			return this.data[row] & 0xFF;
+		}
+
+		@Override
+		public int size() {
+			return this.size;
+		}
+
+		@Override
+		public int width() {
+			return 1;
+		}
+
+		@Override
+		public void addMatches(int value, int[] scores, int from, int to) {
+			if(value < 0 || value > 0xFF) {
+				return;
+			}
+			for(int i = from; i < to; i++) {
+				scores[i - from] += (this.data[i] & 0xFF) == value ? 1 : 0;
+			}
+		}
+
+		@Override
+		public CountColumn append(int value) {
+			if(value < 0 || value > 0xFF) {
+				return copyAndAppend(value);
+			}
+			if(this.size == this.data.length) {
+				this.data = Arrays.copyOf(this.data, grow(this.size));
+			}
+			this.data[this.size++] = (byte) value;
+			return this;
+		}
+	}
+
+	private static final class ShortColumn extends CountColumn {
+
+		private short[] data;
+		private int size;
+
+		private ShortColumn(short[] data, int size) {
+			this.data = data;
+			this.size = size;
+		}
+
+		@Override
+		public int get(int row) {
+			return this.data[row] & 0xFFFF;
+		}
+
+		@Override
+		public int size() {
+			return this.size;
+		}
+
+		@Override
+		public int width() {
+			return 2;
+		}
+
+		@Override
+		public void addMatches(int value, int[] scores, int from, int to) {
+			if(value < 0 || value > 0xFFFF) {
+				return;
+			}
+			for(int i = from; i < to; i++) {
+				scores[i - from] += (this.data[i] & 0xFFFF) == value ? 1 : 0;
+			}
+		}
+
+		@Override
+		public CountColumn append(int value) {
+			if(value < 0 || value > 0xFFFF) {
+				return copyAndAppend(value);
+			}
+			if(this.size == this.data.length) {
+				this.data = Arrays.copyOf(this.data, grow(this.size));
+			}
+			this.data[this.size++] = (short) value;
+			return this;
+		}
+	}
+
+	private static final class IntColumn extends CountColumn {
+
+		private int[] data;
+		private int size;
+
+		private IntColumn(int[] data, int size) {
+			this.data = data;
+			this.size = size;
+		}
+
+		@Override
+		public int get(int row) {
+			return this.data[row];
+		}
+
+		@Override
+		public int size() {
+			return this.size;
+		}
+
+		@Override
+		public int width() {
+			return 4;
+		}
+
+		@Override
+		public void addMatches(int value, int[] scores, int from, int to) {
+			for(int i = from; i < to; i++) {
+				scores[i - from] += this.data[i] == value ? 1 : 0;
+			}
+		}
+
+		@Override
+		public CountColumn append(int value) {
+			if(this.size == this.data.length) {
+				this.data = Arrays.copyOf(this.data, grow(this.size));
+			}
+			this.data[this.size++] = value;
+			return this;
+		}
+	}
+
+	private static final class BufferColumn extends CountColumn {
+
+		private final ByteBuffer data;
+		private final int width;
+		private final int rows;
+		// Counts appended after the rows in the buffer, or null if there are none
+		private CountColumn overflow = null;
+
+		private BufferColumn(ByteBuffer data, int width, int rows) {
+			this.data = data;
+			this.width = width;
+			this.rows = rows;
+		}
+
+		@Override
+		public int get(int row) {
+			if(row >= this.rows) {
+				return this.overflow.get(row - this.rows);
+			}
+			return switch(this.width) {
+				case 1 -> this.data.get(row) & 0xFF;
+				case 2 -> this.data.getShort(row * 2) & 0xFFFF;
+				default -> this.data.getInt(row * 4);
+			};
+		}
+
+		@Override
+		public int size() {
+			return this.overflow == null ? this.rows : this.rows + this.overflow.size();
+		}
+
+		@Override
+		public int width() {
+			return this.overflow == null ? this.width : Math.max(this.width, this.overflow.width());
+		}
+
+		@Override
+		public void addMatches(int value, int[] scores, int from, int to) {
+			int end = Math.min(to, this.rows);
+			switch(this.width) {
+				case 1 -> {
+					if(value >= 0 && value <= 0xFF) {
+						for(int i = from; i < end; i++) {
+							scores[i - from] += (this.data.get(i) & 0xFF) == value ? 1 : 0;
+						}
+					}
+				}
+				case 2 -> {
+					if(value >= 0 && value <= 0xFFFF) {
+						for(int i = from; i < end; i++) {
+							scores[i - from] += (this.data.getShort(i * 2) & 0xFFFF) == value ? 1 : 0;
+						}
+					}
+				}
+				default -> {
+					for(int i = from; i < end; i++) {
+						scores[i - from] += this.data.getInt(i * 4) == value ? 1 : 0;
+					}
+				}
+			}
+			// The few appended rows are compared one at a time
+			for(int i = Math.max(from, this.rows); i < to; i++) {
+				scores[i - from] += this.overflow.get(i - this.rows) == value ? 1 : 0;
+			}
+		}
+
+		@Override
+		public CountColumn append(int value) {
+			// The buffer may be a read-only mapping and is sized exactly, so new counts go after it on the heap
+			this.overflow = this.overflow == null ? of(new int[] {value}) : this.overflow.append(value);
+			return this;
+		}
+
+		@Override
+		public CountColumn toOffHeap(BitSet removed) {
+			if(this.data.isDirect() && this.overflow == null && removed.isEmpty()) {
+				return this;
+			}
+			return super.toOffHeap(removed);
+		}
+	}
+
+}
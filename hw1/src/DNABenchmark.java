@@ -0,0 +1,162 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reproducible benchmarks for loading databases and matching sequences, run over seeded synthetic data.
+ * <p>
+ * Every combination of database size, STR column count and sequence length is measured for:
+ * <ul>
+ *     <li>load time of the same database from CSV with {@link DNAFileParser} and from .strdb</li>
+ *     <li>latency percentiles of single {@link DNAMatcher#match(CharSequence)} calls</li>
+ *     <li>throughput of {@link BatchMatcher} using every core</li>
+ * </ul>
+ * Each measurement follows untimed warm-up runs so the JIT has compiled the code under test. Example:
+ * <pre>
+ *     java DNABenchmark --people 1000,100000,10000000 --columns 8,32 --length 1000,100000 --seed 42
+ * </pre>
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class DNABenchmark {
+
+	private static final int LOAD_WARMUPS = 2;
+	private static final int LOAD_ITERATIONS = 5;
+	private static final int MATCH_WARMUPS = 3;
+
+	private final long seed;
+	private final int queries;
+	private final Path directory;
+	// Accumulates something from every result, so the JIT cannot discard the work being measured
+	private long sink = 0;
+
+	public DNABenchmark(long seed, int queries, Path directory) {
+		this.seed = seed;
+		this.queries = queries;
+		this.directory = directory;
+	}
+
+	/**
+	 * Runs every benchmark for each combination of the parameters given on the command line
+	 *
+	 * @param args Optional {@code --people}, {@code --columns} and {@code --length} lists separated by commas,
+	 *             and single {@code --seed} and {@code --queries} values
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int[] people = {1_000, 100_000, 1_000_000};
+		int[] columns = {8, 32};
+		int[] lengths = {1_000, 100_000};
+		long seed = 42;
+		int queries = 1_000;
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			switch(args[i]) {
+				case "--people" -> people = parseList(args[i + 1]);
+				case "--columns" -> columns = parseList(args[i + 1]);
+				case "--length" -> lengths = parseList(args[i + 1]);
+				case "--seed" -> seed = Long.parseLong(args[i + 1]);
+				case "--queries" -> queries = Integer.parseInt(args[i + 1]);
+				default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+			}
+		}
+
+		Path directory = Files.createTempDirectory("dna-benchmark");
+		try {
+			DNABenchmark benchmark = new DNABenchmark(seed, queries, directory);
+			for(int c : columns) {
+				for(int p : people) {
+					benchmark.run(p, c, lengths);
+				}
+			}
+			System.out.println("(checksum " + benchmark.sink + ")");
+		} finally {
+			try(var files = Files.list(directory)) {
+				for(Path file : (Iterable<Path>) files::iterator) {
+					Files.deleteIfExists(file);
+				}
+			}
+			Files.deleteIfExists(directory);
+		}
+	}
+
+	/**
+	 * Benchmarks one database size and column count against each sequence length
+	 *
+	 * @param people The number of people in the database
+	 * @param columns The number of STR columns
+	 * @param lengths The sequence lengths to match
+	 */
+	public void run(int people, int columns, int[] lengths) throws IOException, InterruptedException {
+		// Seed by shape, so each database is the same however the runs are combined
+		SyntheticDNA generator = new SyntheticDNA(this.seed ^ ((long) people << 20) ^ columns);
+		String[] repeats = generator.repeats(columns);
+		STRDatabase database = generator.database(repeats, people);
+		String shape = String.format("people=%d columns=%d", people, columns);
+
+		// Loaded .strdb files stay mapped, so each shape gets its own files rather than overwriting them
+		Path csv = this.directory.resolve("database-" + people + "-" + columns + ".csv");
+		Path binary = this.directory.resolve("database-" + people + "-" + columns + ".strdb");
+		DNAFileParser.writeCSV(database, "name", csv);
+		STRDatabaseFile.write(database, binary);
+		System.out.printf("load   %s csv=%.1fms strdb=%.1fms%n", shape,
+				timeLoad(csv.toString()) / 1e6, timeLoad(binary.toString()) / 1e6);
+
+		DNAMatcher matcher = new DNAMatcher(database);
+		for(int length : lengths) {
+			List<String> sequences = new ArrayList<>(this.queries);
+			for(int i = 0; i < this.queries; i++) {
+				sequences.add(generator.sequence(database, generator.row(database), length));
+			}
+			String query = String.format("%s length=%d", shape, length);
+
+			// Match every sequence a few times untimed, then record the latency of each call
+			for(int i = 0; i < MATCH_WARMUPS; i++) {
+				for(String sequence : sequences) {
+					this.sink += matcher.match(sequence).getTotalMatches();
+				}
+			}
+			LatencyHistogram latency = new LatencyHistogram();
+			for(String sequence : sequences) {
+				long start = System.nanoTime();
+				MatchResult result = matcher.match(sequence);
+				latency.record(System.nanoTime() - start);
+				this.sink += result.getTotalMatches();
+			}
+			System.out.println("match  " + query + " " + latency.summary());
+
+			int threads = Runtime.getRuntime().availableProcessors();
+			try(BatchMatcher batch = new BatchMatcher(matcher, threads, threads * 4)) {
+				batch.matchAll(sequences, (i, result) -> this.sink += result.getTotalMatches());
+				long start = System.nanoTime();
+				batch.matchAll(sequences, (i, result) -> this.sink += result.getTotalMatches());
+				double seconds = (System.nanoTime() - start) / 1e9;
+				System.out.printf("batch  %s threads=%d throughput=%.0f/s%n", query, threads, sequences.size() / seconds);
+			}
+		}
+	}
+
+	/**
+	 * Returns the median time to load a database file, after warm-up loads
+	 */
+	private long timeLoad(String file) throws IOException {
+		for(int i = 0; i < LOAD_WARMUPS; i++) {
+			this.sink += new DNAFileParser(file).getDatabase().size();
+		}
+		long[] times = new long[LOAD_ITERATIONS];
+		for(int i = 0; i < times.length; i++) {
+			long start = System.nanoTime();
+			this.sink += new DNAFileParser(file).getDatabase().size();
+			times[i] = System.nanoTime() - start;
+		}
+		Arrays.sort(times);
+		return times[times.length / 2];
+	}
+
+	private static int[] parseList(String list) {
+		return Arrays.stream(list.split(",")).mapToInt(s -> Integer.parseInt(s.strip().replace("_", ""))).toArray();
+	}
+
+}
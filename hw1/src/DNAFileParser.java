@@ -1,23 +1,51 @@
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Scanner;
+import java.util.stream.IntStream;
 
 /**
- * File parser for DNA information regarding STR counts
+ * File parser for DNA information regarding STR counts.
+ * <p>
+ * CSV files are read as raw bytes through memory-mapped NIO buffers. The rows after the header are split into
+ * newline-aligned chunks which are parsed in parallel, each writing its counts straight into primitive arrays
+ * without creating a String per cell. Malformed rows are skipped and reported with their line numbers.
  *
  * @author Eli Blaney
  * @version 1.0
  */
 public class DNAFileParser {
 
+	// Smallest and largest number of bytes handed to a single parsing task
+	private static final long MIN_CHUNK_SIZE = 1 << 20;
+	private static final long MAX_CHUNK_SIZE = 1 << 28;
+
 	private String[] repeats;
-	private Person[] people;
+	private STRDatabase database;
+	private final List<String> warnings = new ArrayList<>();
 
-	public DNAFileParser(String file) throws FileNotFoundException {
-		String[][] data = readDataFromCSV(file);
-		parseDNA(data);
+	/**
+	 * Loads a database from either a CSV file or, if the name ends in .strdb, a binary database file
+	 *
+	 * @param file The path to the database file
+	 * @throws IOException If the file cannot be read
+	 */
+	public DNAFileParser(String file) throws IOException {
+		if(file.endsWith(".strdb")) {
+			database = STRDatabaseFile.read(Path.of(file));
+			repeats = database.getRepeats();
+			return;
+		}
+		readDataFromCSV(Path.of(file));
 	}
 
 	/**
@@ -30,74 +58,369 @@ public class DNAFileParser {
 	}
 
 	/**
-	 * Returns the people described by the file with information about their STR counts
+	 * Returns the people described by the file with information about their STR counts.
+	 * Each call creates new Person objects for every row, so prefer {@link #getDatabase()} for large files.
 	 *
 	 * @return A Person array containing the person's name and STR counts
 	 */
 	public Person[] getPeople() {
-		return this.people;
+		Person[] people = new Person[this.database.size()];
+		for(int row = 0; row < people.length; row++) {
+			people[row] = this.database.getPerson(row);
+		}
+		return people;
 	}
 
 	/**
-	 * Processes the CSV sheet to identify the STR sequences and each person's STR information
+	 * Returns the columnar database of STR counts and names described by the file
 	 *
-	 * @param data A two-dimensional string array of the CSV contents
+	 * @return An STRDatabase holding every person's name and STR counts
 	 */
-	private void parseDNA(String[][] data) {
-		// First row is headers
-		String[] headerRow = data[0];
-		repeats = new String[headerRow.length - 1];
-		for(int i = 0; i < headerRow.length; i++) {
-			if(i == 0) {
-				// First entry is column header for names (unneeded)
-				continue;
+	public STRDatabase getDatabase() {
+		return this.database;
+	}
+
+	/**
+	 * Returns a description of each row that was skipped because it could not be parsed
+	 *
+	 * @return A list of messages, each naming the line number of the malformed row
+	 */
+	public List<String> getWarnings() {
+		return this.warnings;
+	}
+
+	/**
+	 * Reads the header of a CSV data file's name column, so the file can be rewritten with the same header
+	 *
+	 * @param file The path to the data file
+	 * @return The first field of the header row, exactly as it appears in the file
+	 * @throws IOException If the file cannot be read or has no header row
+	 */
+	public static String readNameHeader(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			String header = readHeader(channel, new long[1], new int[1]);
+			if(header == null) {
+				throw new IOException(file + " does not contain a CSV header row");
 			}
-			repeats[i - 1] = headerRow[i].toUpperCase();
+			return header.split(",", 2)[0];
 		}
+	}
 
-		// Rows after the first are entries for people
-		people = new Person[data.length - 1];
-		for(int i = 1; i < data.length; i++) {
-			String[] row = data[i];
-			String personName = row[0];
-			int[] repeatData = new int[row.length - 1];
-			for(int j = 1; j < row.length; j++) {
-				// TODO: handle bad parsing?
-				repeatData[j - 1] = Integer.parseInt(row[j]);
+	/**
+	 * Writes the people who have not been removed from a database to a CSV file this parser can read back
+	 *
+	 * @param database The database to write
+	 * @param nameHeader The header of the name column
+	 * @param file The path of the CSV file to create or replace
+	 * @throws IOException If the file cannot be written
+	 */
+	public static void writeCSV(STRDatabase database, String nameHeader, Path file) throws IOException {
+		String[] repeats = database.getRepeats();
+		try(BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			out.write(nameHeader);
+			for(String repeat : repeats) {
+				out.write(',');
+				out.write(repeat);
+			}
+			out.newLine();
+			for(int row = 0; row < database.size(); row++) {
+				if(database.isDeleted(row)) {
+					continue;
+				}
+				out.write(database.getName(row));
+				for(int c = 0; c < repeats.length; c++) {
+					out.write(',');
+					out.write(Integer.toString(database.getColumn(c).get(row)));
+				}
+				out.newLine();
 			}
-			people[i - 1] = new Person(personName, repeatData);
 		}
 	}
 
 	/**
-	 * Reads a data file and processes it as a CSV file
+	 * Reads a CSV data file: the first non-blank line holds the STR column headers and each later line holds a
+	 * person's name followed by their STR counts
 	 *
 	 * @param file The path to the data file
-	 * @return A two-dimensional array containing the contents of the CSV file
+	 * @throws IOException If the file cannot be read or has no header row
+	 */
+	private void readDataFromCSV(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long[] headerEnd = new long[1];
+			int[] headerLine = new int[1];
+			String header = readHeader(channel, headerEnd, headerLine);
+			if(header == null) {
+				throw new IOException(file + " does not contain a CSV header row");
+			}
+			parseHeader(header);
+
+			// Split the remaining rows into newline-aligned chunks
+			int tasks = Runtime.getRuntime().availableProcessors() * 4;
+			long chunkSize = Math.min(Math.max((size - headerEnd[0]) / tasks, MIN_CHUNK_SIZE), MAX_CHUNK_SIZE);
+			List<Long> bounds = new ArrayList<>();
+			bounds.add(headerEnd[0]);
+			long position = headerEnd[0];
+			while(position < size) {
+				position = nextLineStart(channel, Math.min(position + chunkSize, size));
+				bounds.add(position);
+			}
+
+			Chunk[] chunks;
+			try {
+				chunks = IntStream.range(0, bounds.size() - 1).parallel()
+						.mapToObj(i -> parseChunk(channel, bounds.get(i), bounds.get(i + 1)))
+						.toArray(Chunk[]::new);
+			} catch(UncheckedIOException e) {
+				throw e.getCause();
+			}
+			assemble(chunks, headerLine[0]);
+		}
+	}
+
+	/**
+	 * Reads the first non-blank line of the file
+	 *
+	 * @param channel The channel for the data file
+	 * @param end A single-element array that receives the position just after the header line
+	 * @param line A single-element array that receives the line number of the header
+	 * @return The header line, or null if the file has no non-blank lines
+	 */
+	private static String readHeader(FileChannel channel, long[] end, int[] line) throws IOException {
+		long size = channel.size();
+		long position = 0;
+		while(position < size) {
+			line[0]++;
+			// Search from the next byte so an empty line still ends at its own newline
+			long next = nextLineStart(channel, position + 1);
+			ByteBuffer bytes = ByteBuffer.allocate((int) (next - position));
+			channel.read(bytes, position);
+			String text = new String(bytes.array(), StandardCharsets.UTF_8).strip();
+			position = next;
+			if(!text.isEmpty()) {
+				end[0] = position;
+				return text;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Processes the header row to identify the STR sequences
+	 *
+	 * @param header The header row of the CSV file
+	 */
+	private void parseHeader(String header) {
+		String[] headerRow = header.split(",");
+		repeats = new String[headerRow.length - 1];
+		for(int i = 1; i < headerRow.length; i++) {
+			// First entry is column header for names (unneeded)
+			repeats[i - 1] = headerRow[i].strip().toUpperCase();
+		}
+	}
+
+	/**
+	 * Finds the start of the line following a position in the file
+	 *
+	 * @param channel The channel for the data file
+	 * @param position The position to search from
+	 * @return The position just after the next newline, or the end of the file
 	 */
-	private String[][] readDataFromCSV(String file) throws FileNotFoundException {
-		// TODO: handle no file exists?
-		Scanner scanner = new Scanner(new File(file));
-		List<String[]> lines = new ArrayList<>();
-		int columns = -1;
+	private static long nextLineStart(FileChannel channel, long position) throws IOException {
+		long size = channel.size();
+		if(position > 0 && position < size) {
+			// Already at a line start if the previous byte ended a line
+			ByteBuffer previous = ByteBuffer.allocate(1);
+			channel.read(previous, position - 1);
+			if(previous.get(0) == '\n') {
+				return position;
+			}
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		while(position < size) {
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			for(int i = 0; i < read; i++) {
+				if(buffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	/**
+	 * Parses the rows in one newline-aligned region of the file
+	 *
+	 * @param channel The channel for the data file
+	 * @param start The position of the first byte of the region
+	 * @param end The position just after the last byte of the region
+	 * @return The names, counts and problems found in the region
+	 */
+	private Chunk parseChunk(FileChannel channel, long start, long end) {
+		MappedByteBuffer data;
+		try {
+			data = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		Chunk chunk = new Chunk(repeats.length);
+		int[] row = new int[repeats.length];
+		int limit = data.limit();
+		int lineStart = 0;
+		while(lineStart < limit) {
+			int lineEnd = lineStart;
+			while(lineEnd < limit && data.get(lineEnd) != '\n') {
+				lineEnd++;
+			}
+			chunk.lines++;
+			parseRow(data, lineStart, lineEnd, row, chunk);
+			lineStart = lineEnd + 1;
+		}
+		return chunk;
+	}
+
+	/**
+	 * Parses a single row of the CSV file, adding it to the chunk or recording why it is malformed
+	 */
+	private void parseRow(ByteBuffer data, int start, int end, int[] row, Chunk chunk) {
+		// Ignore trailing whitespace, including the carriage return of Windows line endings
+		while(end > start && data.get(end - 1) <= ' ') {
+			end--;
+		}
+		if(end == start) {
+			return;
+		}
+
+		int nameEnd = start;
+		while(nameEnd < end && data.get(nameEnd) != ',') {
+			nameEnd++;
+		}
+		int column = 0;
+		int position = nameEnd;
+		while(position < end) {
+			// Skip the comma, then read one count
+			position++;
+			if(column == repeats.length) {
+				chunk.warn("has more than " + repeats.length + " STR counts");
+				return;
+			}
+			while(position < end && data.get(position) == ' ') {
+				position++;
+			}
+			long value = 0;
+			int digits = 0;
+			while(position < end && data.get(position) >= '0' && data.get(position) <= '9') {
+				value = value * 10 + (data.get(position) - '0');
+				if(value > Integer.MAX_VALUE) {
+					chunk.warn("has a count too large in column " + (column + 1));
+					return;
+				}
+				position++;
+				digits++;
+			}
+			while(position < end && data.get(position) == ' ') {
+				position++;
+			}
+			if(digits == 0 || (position < end && data.get(position) != ',')) {
+				chunk.warn("has a count that is not a whole number in column " + (column + 1));
+				return;
+			}
+			row[column++] = (int) value;
+		}
+		if(column < repeats.length) {
+			chunk.warn("has " + column + " STR counts but " + repeats.length + " were expected");
+			return;
+		}
+
+		chunk.addName(data, start, nameEnd);
+		for(int c = 0; c < repeats.length; c++) {
+			chunk.counts[c].add(row[c]);
+		}
+	}
+
+	/**
+	 * Joins the parsed chunks, in file order, into the columnar database
+	 *
+	 * @param chunks The parsed chunks
+	 * @param firstLine The line number of the header row
+	 */
+	private void assemble(Chunk[] chunks, int firstLine) {
+		int rows = 0;
+		int nameBytes = 0;
+		int line = firstLine;
+		for(Chunk chunk : chunks) {
+			rows += chunk.nameOffsets.size();
+			nameBytes += chunk.nameLength;
+			for(int i = 0; i < chunk.warningLines.size(); i++) {
+				warnings.add("Line " + (line + chunk.warningLines.get(i)) + " " + chunk.warningMessages.get(i));
+			}
+			line += chunk.lines;
+		}
 
-		while(scanner.hasNextLine()) {
-			String line = scanner.nextLine();
-			if(line.isBlank()) {
-				continue;
+		byte[] names = new byte[nameBytes];
+		int[] nameOffsets = new int[rows + 1];
+		int[][] counts = new int[repeats.length][rows];
+		int row = 0;
+		int offset = 0;
+		for(Chunk chunk : chunks) {
+			int chunkRows = chunk.nameOffsets.size();
+			System.arraycopy(chunk.names, 0, names, offset, chunk.nameLength);
+			int[] chunkOffsets = chunk.nameOffsets.toArray();
+			for(int i = 0; i < chunkRows; i++) {
+				nameOffsets[row + i + 1] = offset + chunkOffsets[i];
 			}
-			String[] lineData = line.split(",");
+			for(int c = 0; c < repeats.length; c++) {
+				System.arraycopy(chunk.counts[c].toArray(), 0, counts[c], row, chunkRows);
+			}
+			row += chunkRows;
+			offset += chunk.nameLength;
+		}
+
+		CountColumn[] columns = new CountColumn[repeats.length];
+		for(int c = 0; c < repeats.length; c++) {
+			columns[c] = CountColumn.of(counts[c]);
+			counts[c] = null;
+		}
+		database = new STRDatabase(repeats, columns, new NameTable(names, nameOffsets));
+	}
+
+	/**
+	 * Rows parsed from one region of the file, stored as primitive columns and a packed name blob
+	 */
+	private static final class Chunk {
+
+		private final STRIndex.IntList[] counts;
+		// End offset of each name within the names array
+		private final STRIndex.IntList nameOffsets = new STRIndex.IntList();
+		private byte[] names = new byte[256];
+		private int nameLength = 0;
+		private int lines = 0;
+		private final List<Integer> warningLines = new ArrayList<>();
+		private final List<String> warningMessages = new ArrayList<>();
 
-			lines.add(lineData);
+		private Chunk(int columns) {
+			this.counts = new STRIndex.IntList[columns];
+			for(int c = 0; c < columns; c++) {
+				this.counts[c] = new STRIndex.IntList();
+			}
+		}
 
-			if(columns == -1) {
-				columns = lineData.length;
+		private void addName(ByteBuffer data, int start, int end) {
+			int length = end - start;
+			if(this.nameLength + length > this.names.length) {
+				this.names = Arrays.copyOf(this.names, Math.max(this.names.length * 2, this.nameLength + length));
 			}
+			data.get(start, this.names, this.nameLength, length);
+			this.nameLength += length;
+			this.nameOffsets.add(this.nameLength);
 		}
-		scanner.close();
 
-		int rows = lines.size();
-		return lines.toArray(new String[rows][columns]);
+		private void warn(String message) {
+			this.warningLines.add(this.lines);
+			this.warningMessages.add(message);
+		}
 	}
 
 }
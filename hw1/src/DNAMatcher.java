@@ -1,19 +1,353 @@
-import java.util.*;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Query processor for a database of STRs and people
+ * <p>
+ * People can be added, updated and removed after the matcher is built. Each change updates the indexes in place
+ * and clears the result cache; queries run concurrently with each other but never with a change. Removed people,
+ * and the old rows of updated people, are dropped from memory once they outnumber the live people, or when
+ * {@link #reclaim()} is called.
  *
  * @author Eli Blaney
  * @version 1.0
  */
 public class DNAMatcher {
 	
+	// Rows of removed people are kept until there are at least this many, however few people are live
+	private static final int MIN_RECLAIM_ROWS = 1024;
+	// People added to an off-heap database are held on the heap until there are this many, then copied off it
+	private static final int MAX_HEAP_ROWS = 1 << 16;
+
+	/** The greatest number of people a match returns until {@link #setMaxResults(int)} is called */
+	public static final int DEFAULT_MAX_RESULTS = 1000;
+
 	private final String[] repeats;
-	private final Person[] people;
+	private volatile STRCounter counter;
+	private final PackedSTRCounter packedCounter;
+	private final boolean indexed;
+	// Replaced when removed rows are reclaimed, always under the write lock
+	private STRDatabase database;
+	private STRIndex index;
+	private ExactProfileIndex exactIndex;
+	private QueryPlanner planner;
+	// People appended since the database was last copied off the heap, which are held on the heap meanwhile
+	private int heapRows = 0;
+	private ForkJoinPool parallelPool = null;
+	private volatile MatchCache cache = null;
+	private volatile int maxResults = DEFAULT_MAX_RESULTS;
+	private volatile VPTree distanceTree = null;
+	private double[] distanceWeights = null;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final MatchMetrics metrics = new MatchMetrics();
+	private DatabaseLog log = null;
 	
 	public DNAMatcher(String[] repeats, Person[] people) {
-		this.repeats = repeats;
-		this.people = people;
+		this(STRDatabase.of(repeats, people));
+	}
+
+	public DNAMatcher(STRDatabase database) {
+		this(database, true);
+	}
+
+	/**
+	 * Creates a matcher, optionally without the heap indexes that speed up matching. Without them, every query
+	 * scans the database columns in parallel, but the heap used by the matcher no longer grows with the number
+	 * of people, so a database held off the heap (see {@link STRDatabase#toOffHeap()} and .strdb files) keeps
+	 * the heap small and garbage collection fast however large it is.
+	 *
+	 * @param database The database to match against
+	 * @param indexed Whether to build the STR index and exact-profile hash
+	 */
+	public DNAMatcher(STRDatabase database, boolean indexed) {
+		this.repeats = database.getRepeats();
+		this.database = database;
+		this.counter = new STRCounter(this.repeats);
+		this.packedCounter = new PackedSTRCounter(this.repeats);
+		this.indexed = indexed;
+		buildIndexes();
+	}
+
+	private void buildIndexes() {
+		this.index = this.indexed ? new STRIndex(this.database) : null;
+		this.exactIndex = this.indexed ? new ExactProfileIndex(this.database) : null;
+		this.planner = this.indexed ? null : new QueryPlanner(this.database);
+	}
+
+	/**
+	 * Chooses how close matches are found. By default the STR index is consulted on the calling thread;
+	 * in parallel mode every profile is instead compared in fork-join shards across all available cores,
+	 * which is faster for uninformative queries whose counts are shared by much of the database.
+	 *
+	 * @param parallel Whether to scan the database in parallel rather than consult the index
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallelPool = parallel ? ForkJoinPool.commonPool() : null;
+	}
+
+	/**
+	 * Chooses what is counted for each STR in a queried sequence. Profile databases record the longest run of each
+	 * STR, so {@link STRCounter.CountMode#LONGEST_RUN} gives exact matches that the default count of every
+	 * occurrence can miss. Both are found in the same single pass over the sequence.
+	 *
+	 * @param mode The counting mode used by later queries
+	 */
+	public void setCountMode(STRCounter.CountMode mode) {
+		// Cached results are keyed by the counts themselves, so they stay valid
+		this.counter = new STRCounter(this.repeats, mode);
+	}
+
+	/**
+	 * Limits how many people a match returns. When more people match equally well, the ones earliest in the
+	 * database are kept and the rest are only counted, so the size of a result stays bounded however
+	 * ambiguous the query is. Matches return at most {@link #DEFAULT_MAX_RESULTS} people by default.
+	 *
+	 * @param maxResults The greatest number of people to return, or 0 for no limit
+	 */
+	public void setMaxResults(int maxResults) {
+		// Under the write lock, so no query still running with the old limit can cache its result afterwards
+		this.lock.writeLock().lock();
+		try {
+			this.maxResults = maxResults > 0 ? maxResults : Integer.MAX_VALUE;
+			invalidateCache();
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Enables a bounded cache of results keyed by the STR counts of each query, replacing any existing cache.
+	 * Repeated profiles are then answered without consulting the database.
+	 *
+	 * @param maxEntries The greatest number of results to keep, or 0 to disable caching
+	 */
+	public void setCacheSize(int maxEntries) {
+		this.cache = maxEntries > 0 ? new MatchCache(maxEntries) : null;
+	}
+
+	/**
+	 * Returns the result cache, for its hit and miss statistics
+	 *
+	 * @return The MatchCache in use, or null if caching is disabled
+	 */
+	public MatchCache getCache() {
+		return this.cache;
+	}
+
+	/**
+	 * Discards every cached result. Must be called whenever the underlying database changes.
+	 */
+	public void invalidateCache() {
+		MatchCache cache = this.cache;
+		if(cache != null) {
+			cache.invalidate();
+		}
+	}
+
+	/**
+	 * Returns the running totals of time spent in each phase of a query and of what queries touched
+	 *
+	 * @return The live metrics of this matcher; call {@link MatchMetrics#snapshot()} to read them
+	 */
+	public MatchMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	/**
+	 * Records every later change to the database in a log, so it can be replayed when the database is next loaded
+	 *
+	 * @param log The log to append changes to, or null to stop recording
+	 */
+	public void setLog(DatabaseLog log) {
+		this.lock.writeLock().lock();
+		try {
+			this.log = log;
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds a new person to the database
+	 *
+	 * @param name The name of the person, which must not already be in the database
+	 * @param dnaRepeats The person's count for each STR, in column order
+	 * @throws IllegalArgumentException If the name is taken or the counts do not match the STR columns
+	 */
+	public void add(String name, int[] dnaRepeats) {
+		this.lock.writeLock().lock();
+		try {
+			if(this.database.find(name).length > 0) {
+				throw new IllegalArgumentException("Person already exists: " + name);
+			}
+			put(name, dnaRepeats);
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Replaces the STR counts of an existing person
+	 *
+	 * @param name The name of the person
+	 * @param dnaRepeats The person's new count for each STR, in column order
+	 * @return Whether the person was found and updated
+	 * @throws IllegalArgumentException If the counts do not match the STR columns
+	 */
+	public boolean update(String name, int[] dnaRepeats) {
+		this.lock.writeLock().lock();
+		try {
+			if(this.database.find(name).length == 0) {
+				return false;
+			}
+			put(name, dnaRepeats);
+			return true;
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes a person from the database
+	 *
+	 * @param name The name of the person
+	 * @return Whether the person was found and removed
+	 */
+	public boolean remove(String name) {
+		this.lock.writeLock().lock();
+		try {
+			int[] rows = this.database.find(name);
+			if(rows.length == 0) {
+				return false;
+			}
+			for(int row : rows) {
+				this.database.delete(row);
+			}
+			invalidateCache();
+			if(this.log != null) {
+				this.log.recordDelete(name);
+			}
+			reclaimIfSparse();
+			return true;
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Writes the people currently in the database, without any removed rows, straight from its columns to a CSV
+	 * file. Queries carry on while the file is written, but changes wait until it is done.
+	 *
+	 * @param file The path of the CSV file to create or replace
+	 * @param nameHeader The header of the name column
+	 * @throws IOException If the file cannot be written
+	 */
+	public void writeCSV(Path file, String nameHeader) throws IOException {
+		this.lock.readLock().lock();
+		try {
+			DNAFileParser.writeCSV(this.database, nameHeader, file);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Writes the people currently in the database, without any removed rows, straight from its columns to a
+	 * binary .strdb file. Queries carry on while the file is written, but changes wait until it is done.
+	 *
+	 * @param file The path of the .strdb file to create or replace
+	 * @throws IOException If the file cannot be written
+	 */
+	public void writeSTRDB(Path file) throws IOException {
+		this.lock.readLock().lock();
+		try {
+			STRDatabaseFile.write(this.database, file);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Drops the rows of removed people, and the old rows of updated people, from memory and rebuilds the indexes
+	 * over the rest. A database held off the heap stays off the heap, and the people added to it since it was last
+	 * copied move off the heap too. Queries wait until this finishes, which takes about as long as building the
+	 * matcher did. Called by {@link DatabaseLog} after each compaction.
+	 */
+	public void reclaim() {
+		this.lock.writeLock().lock();
+		try {
+			STRDatabase rebuilt;
+			if(this.database.isOffHeap()) {
+				rebuilt = this.database.toOffHeap();
+			} else {
+				rebuilt = this.database.liveSize() == this.database.size() ? this.database : this.database.compact();
+			}
+			if(rebuilt == this.database) {
+				return;
+			}
+			this.database = rebuilt;
+			this.heapRows = 0;
+			buildIndexes();
+			// Row ids have changed, so nothing built over the old rows can be kept
+			this.distanceTree = null;
+			invalidateCache();
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Reclaims removed rows once they outnumber the live people, so a long run of updates costs only a constant
+	 * factor more memory than the people it leaves, and moves people added to an off-heap database off the heap
+	 * before the heap they hold grows large. The caller must hold the write lock.
+	 */
+	private void reclaimIfSparse() {
+		int removed = this.database.size() - this.database.liveSize();
+		if((removed >= MIN_RECLAIM_ROWS && removed > this.database.liveSize()) || this.heapRows >= MAX_HEAP_ROWS) {
+			reclaim();
+		}
+	}
+
+	/**
+	 * Replaces any rows held under a name with a new row and brings every index up to date.
+	 * The caller must hold the write lock.
+	 */
+	private void put(String name, int[] dnaRepeats) {
+		if(dnaRepeats.length != this.repeats.length) {
+			throw new IllegalArgumentException("Expected " + this.repeats.length + " STR counts but got " + dnaRepeats.length);
+		}
+		if(name.isEmpty() || name.indexOf(',') >= 0 || name.indexOf('\n') >= 0 || name.indexOf('\r') >= 0) {
+			throw new IllegalArgumentException("Names must be non-empty and contain no commas or line breaks: " + name);
+		}
+		for(int row : this.database.find(name)) {
+			this.database.delete(row);
+		}
+		int row = this.database.append(name, dnaRepeats);
+		if(this.database.isOffHeap()) {
+			this.heapRows++;
+		}
+		if(this.index != null) {
+			this.index.add(row);
+			this.exactIndex.add(row);
+		} else {
+			this.planner.add(row);
+		}
+		invalidateCache();
+
+		// New rows are compared one by one outside the distance tree, so rebuild it once there are many
+		VPTree tree = this.distanceTree;
+		if(tree != null && tree.getPendingRows() > Math.max(1024, this.database.size() / 8)) {
+			this.distanceTree = null;
+		}
+		if(this.log != null) {
+			this.log.recordPut(name, dnaRepeats);
+		}
+		reclaimIfSparse();
 	}
 
 	/**
@@ -22,65 +356,233 @@ public class DNAMatcher {
 	 * @param pattern The DNA sequence which will be searched for STRs and matched in the database
 	 * @return A MatchResult object describing the success or failure of the query and its associated data, if any
 	 */
-	public MatchResult match(String pattern) {
+	public MatchResult match(CharSequence pattern) {
 		// Get count of each kind of STR
-		int numRepeats = this.repeats.length;
-		int[] repeatCounts = new int[numRepeats];
-		for(int i = 0; i < numRepeats; i++) {
-			repeatCounts[i] = numSubstrings(pattern, this.repeats[i]);
-		}
-
-		// Compare counts with person data
-		Map<Person, Integer> sums = new HashMap<>();
-		for(Person p : this.people) {
-			int numSTRsInCommon = 0;
-			for(int i = 0; i < numRepeats; i++) {
-				if(repeatCounts[i] == p.getDnaRepeats()[i]) {
-					numSTRsInCommon++;
+		MatchMetrics.Query query = this.metrics.begin();
+		int[] repeatCounts = this.counter.count(pattern);
+		query.mark(MatchMetrics.Phase.COUNTING);
+		return match(repeatCounts, query);
+	}
+
+	/**
+	 * Performs a search query on the database for a packed DNA sequence, counting STRs a word of bases at a time
+	 *
+	 * @param sequence The packed DNA sequence which will be searched for STRs and matched in the database
+	 * @return A MatchResult object describing the success or failure of the query and its associated data, if any
+	 */
+	public MatchResult match(PackedSequence sequence) {
+		MatchMetrics.Query query = this.metrics.begin();
+		int[] repeatCounts = this.counter.getMode() == STRCounter.CountMode.LONGEST_RUN
+				? this.packedCounter.longestRuns(sequence) : this.packedCounter.count(sequence);
+		query.mark(MatchMetrics.Phase.COUNTING);
+		return match(repeatCounts, query);
+	}
+
+	/**
+	 * Performs a search query on the database for a DNA sequence stored in a file.
+	 * The file is streamed rather than loaded, so sequences too large for a String can be queried.
+	 *
+	 * @param file The path to a file containing the DNA sequence to be searched for STRs
+	 * @return A MatchResult object describing the success or failure of the query and its associated data, if any
+	 * @throws IOException If the file cannot be read
+	 */
+	public MatchResult match(Path file) throws IOException {
+		MatchMetrics.Query query = this.metrics.begin();
+		int[] repeatCounts = this.counter.count(file);
+		query.mark(MatchMetrics.Phase.COUNTING);
+		return match(repeatCounts, query);
+	}
+
+	/**
+	 * Performs a search query on the database for a DNA sequence read from a channel
+	 *
+	 * @param channel The channel supplying the DNA sequence to be searched for STRs
+	 * @return A MatchResult object describing the success or failure of the query and its associated data, if any
+	 * @throws IOException If the channel cannot be read
+	 */
+	public MatchResult match(ReadableByteChannel channel) throws IOException {
+		MatchMetrics.Query query = this.metrics.begin();
+		int[] repeatCounts = this.counter.count(channel);
+		query.mark(MatchMetrics.Phase.COUNTING);
+		return match(repeatCounts, query);
+	}
+
+	/**
+	 * Finds the people whose STR counts are nearest to those of a DNA sequence, ranked by the sum of the
+	 * (weighted) differences between counts. Unlike {@link #match(CharSequence)}, a person who is off by one
+	 * repeat in every STR still ranks close. The metric index is built on the first such query.
+	 *
+	 * @param pattern The DNA sequence which will be searched for STRs and matched in the database
+	 * @param k The greatest number of people to return, at least 1
+	 * @return A MatchResult holding the nearest people, closest first, and their distances
+	 */
+	public MatchResult matchNearest(CharSequence pattern, int k) {
+		MatchMetrics.Query query = this.metrics.begin();
+		int[] repeatCounts = this.counter.count(pattern);
+		query.mark(MatchMetrics.Phase.COUNTING);
+		MatchResult result;
+		this.lock.readLock().lock();
+		try {
+			query.mark(MatchMetrics.Phase.WAITING);
+			result = nearest(repeatCounts, k, query);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+		this.metrics.end(query, result);
+		return result;
+	}
+
+	private MatchResult nearest(int[] repeatCounts, int k, MatchMetrics.Query query) {
+		VPTree tree = getDistanceTree();
+		// The tree returns no more people than the database holds, whatever k is asked for
+		double[] distances = new double[Math.max(Math.min(k, this.database.liveSize()), 0)];
+		int[] nearest = tree.nearest(repeatCounts, k, distances);
+		query.mark(MatchMetrics.Phase.COMPARISON);
+		if(nearest.length == 0) {
+			return new MatchResult(MatchResult.ResultType.NO_MATCH, null, 0);
+		}
+
+		// Report how many STRs the closest person has in common, as for other matches
+		int numSTRsInCommon = 0;
+		for(int i = 0; i < this.repeats.length; i++) {
+			if(this.database.getColumn(i).get(nearest[0]) == repeatCounts[i]) {
+				numSTRsInCommon++;
+			}
+		}
+		MatchResult.ResultType type = distances[0] == 0
+				? MatchResult.ResultType.EXACT_MATCH : MatchResult.ResultType.CLOSE_MATCH;
+		MatchResult result = new MatchResult(type, this.database.getPeople(nearest), numSTRsInCommon,
+				Arrays.copyOf(distances, nearest.length));
+		query.mark(MatchMetrics.Phase.RESULT);
+		return result;
+	}
+
+	/**
+	 * Sets how much each STR contributes to the distance used by {@link #matchNearest(CharSequence, int)}
+	 *
+	 * @param weights A non-negative weight for each STR column, or null to weigh every STR equally
+	 */
+	public synchronized void setDistanceWeights(double[] weights) {
+		this.distanceWeights = weights == null ? null : weights.clone();
+		this.distanceTree = null;
+	}
+
+	private VPTree getDistanceTree() {
+		VPTree tree = this.distanceTree;
+		if(tree == null) {
+			synchronized(this) {
+				tree = this.distanceTree;
+				if(tree == null) {
+					tree = new VPTree(this.database, this.distanceWeights);
+					this.distanceTree = tree;
 				}
 			}
-			sums.put(p, numSTRsInCommon);
 		}
+		return tree;
+	}
 
-		// Get closest (hopefully exact) match by comparing to benchmark
-		List<Person> matches = new ArrayList<>();
+	/**
+	 * Matches a set of STR counts against the database
+	 *
+	 * @param repeatCounts The number of each STR found in the queried sequence
+	 * @param query The timings of the query, which has finished counting
+	 * @return A MatchResult object describing the success or failure of the query and its associated data, if any
+	 */
+	private MatchResult match(int[] repeatCounts, MatchMetrics.Query query) {
+		// Results are cached under the lock too, so a result computed before a change is never cached after it
+		MatchResult result;
+		this.lock.readLock().lock();
+		try {
+			query.mark(MatchMetrics.Phase.WAITING);
+			result = cachedCompare(repeatCounts, query);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+		this.metrics.end(query, result);
+		return result;
+	}
+
+	private MatchResult cachedCompare(int[] repeatCounts, MatchMetrics.Query query) {
+		MatchCache cache = this.cache;
+		if(cache == null) {
+			return compare(repeatCounts, query);
+		}
+		MatchResult result = cache.get(repeatCounts);
+		query.mark(MatchMetrics.Phase.CACHE);
+		if(result != null) {
+			query.cacheHit();
+			return result;
+		}
+		result = compare(repeatCounts, query);
+		cache.put(repeatCounts, result);
+		query.mark(MatchMetrics.Phase.CACHE);
+		return result;
+	}
+
+	/**
+	 * Compares a set of STR counts against the database, bypassing the cache
+	 *
+	 * @param repeatCounts The number of each STR found in the queried sequence
+	 * @param query The timings of the query
+	 * @return A MatchResult object describing the success or failure of the query and its associated data, if any
+	 */
+	private MatchResult compare(int[] repeatCounts, MatchMetrics.Query query) {
+		int numRepeats = this.repeats.length;
+
+		// Look up an exact match first, then fall back to the people with the most STRs in common
+		int limit = this.maxResults;
 		int benchmark = numRepeats;
-		while(matches.isEmpty() && benchmark > 0) {
-			for(Map.Entry<Person, Integer> e : sums.entrySet()) {
-				if(e.getValue() == benchmark) {
-					matches.add(e.getKey());
-				}
+		int[] stats = new int[3];
+		int[] matches = new int[0];
+		int total = 0;
+		// A person visited by both the exact and the closest scan is still only one person compared
+		long compared = 0;
+		ForkJoinPool pool = this.parallelPool != null ? this.parallelPool : ForkJoinPool.commonPool();
+		if(this.exactIndex != null) {
+			matches = this.exactIndex.lookup(repeatCounts, limit, stats);
+			total = stats[0];
+			if(matches.length > 0) {
+				query.exactIndexHit();
+			}
+		} else {
+			// Without indexes, scan for exact matches comparing the most selective columns first
+			long[] scanStats = new long[2];
+			matches = ProfileScanner.exact(this.database, repeatCounts, this.planner.order(repeatCounts), limit,
+					scanStats, pool);
+			total = (int) scanStats[0];
+			compared = this.database.size();
+			query.skipped(scanStats[1]);
+		}
+		query.mark(MatchMetrics.Phase.EXACT_LOOKUP);
+		if(matches.length == 0) {
+			if(this.index == null) {
+				matches = ProfileScanner.closest(this.database, repeatCounts, limit, stats, pool);
+			} else if(this.parallelPool != null) {
+				matches = ProfileScanner.closest(this.database, repeatCounts, limit, stats, this.parallelPool);
+			} else {
+				matches = this.index.closest(repeatCounts, limit, stats);
 			}
-			benchmark--;
+			benchmark = stats[0];
+			total = stats[1];
+			compared = Math.max(compared, stats[2]);
+			query.mark(MatchMetrics.Phase.COMPARISON);
 		}
+		query.compared(compared);
 
 		// Build result
-		if(!matches.isEmpty()) {
-			Person[] matchesArray = matches.toArray(new Person[0]);
+		MatchResult result;
+		if(matches.length > 0) {
+			// Person objects are only created for the matching rows, while the read lock still keeps them stable
 			MatchResult.ResultType type = MatchResult.ResultType.CLOSE_MATCH;
-			if(++benchmark == numRepeats) {
+			if(benchmark == numRepeats) {
 				type = MatchResult.ResultType.EXACT_MATCH;
 			}
-			return new MatchResult(type, matchesArray, benchmark);
+			result = new MatchResult(type, this.database, matches, benchmark, total);
 		} else {
-			return new MatchResult(MatchResult.ResultType.NO_MATCH, null, 0);
+			result = new MatchResult(MatchResult.ResultType.NO_MATCH, null, 0);
 		}
-	}
-
-	/**
-	 * Determines the number of a certain substring present in a bigger string
-	 *
-	 * @param string The string that contains the substring pattern to be searched
-	 * @param substring The substring to be searched within the string
-	 * @return The number of substrings within the string
-	 */
-	private int numSubstrings(String string, String substring) {
-		/*
-		 * split will make array from substrings, so we can
-		 * count the number of substrings by taking the length - 1
-		 */
-		// append "$" to string because split will ignore trailing split pattern
-		return (string + "$").split(substring).length - 1;
+		query.mark(MatchMetrics.Phase.RESULT);
+		return result;
 	}
 
 }
@@ -0,0 +1,238 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only log of the changes made to a matcher's database since it was loaded from disk.
+ * <p>
+ * Each line records one change: {@code PUT,name,count,...} sets the counts of a person, adding them if needed,
+ * and {@code DELETE,name} removes them. Both are idempotent, so replaying a line that has already been applied
+ * is harmless. Once enough changes have been logged, a background thread writes the whole database back to its
+ * file, discards the log and has the matcher reclaim the memory held by removed people. The log is first moved
+ * aside, so changes made during compaction go to a fresh log and a crash at any point leaves the database file and
+ * logs replaying to the same people.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class DatabaseLog implements Closeable {
+
+	private static final String PUT = "PUT";
+	private static final String DELETE = "DELETE";
+
+	private final DNAMatcher matcher;
+	private final Path database;
+	private final Path log;
+	// Holds the changes being folded into the database file by a compaction in progress
+	private final Path compacting;
+	private final int compactThreshold;
+	private final ExecutorService compactor;
+	private BufferedWriter writer = null;
+	private int entries = 0;
+	private boolean compactionPending = false;
+
+	/**
+	 * Opens the log kept beside a database file. Any changes already in it are not applied until
+	 * {@link #replay()} is called.
+	 *
+	 * @param matcher The matcher whose database the log records
+	 * @param database The path of the database file, either CSV or .strdb
+	 * @param compactThreshold The number of logged changes that triggers a compaction, or 0 to never compact
+	 */
+	public DatabaseLog(DNAMatcher matcher, Path database, int compactThreshold) {
+		this.matcher = matcher;
+		this.database = database;
+		this.log = database.resolveSibling(database.getFileName() + ".log");
+		this.compacting = database.resolveSibling(database.getFileName() + ".log.old");
+		this.compactThreshold = compactThreshold;
+		this.compactor = Executors.newSingleThreadExecutor(task -> {
+			Thread thread = new Thread(task, "database-compactor");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Applies every logged change to the matcher, oldest first. Call this before attaching the log to the matcher
+	 * with {@link DNAMatcher#setLog(DatabaseLog)}, so that replayed changes are not logged again.
+	 *
+	 * @return Messages describing each line that could not be applied, such as one cut short by a crash
+	 * @throws IOException If a log exists but cannot be read
+	 */
+	public List<String> replay() throws IOException {
+		List<String> warnings = new ArrayList<>();
+		for(Path file : new Path[] {this.compacting, this.log}) {
+			if(!Files.exists(file)) {
+				continue;
+			}
+			try(BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+				String line;
+				int lineNumber = 0;
+				while((line = in.readLine()) != null) {
+					lineNumber++;
+					if(line.isBlank()) {
+						continue;
+					}
+					try {
+						apply(line);
+						this.entries++;
+					} catch(IllegalArgumentException e) {
+						warnings.add(file.getFileName() + " line " + lineNumber + ": " + e.getMessage());
+					}
+				}
+			}
+		}
+		return warnings;
+	}
+
+	/**
+	 * Records that a person's counts were set. Called by the matcher while it holds its write lock.
+	 *
+	 * @param name The name of the person
+	 * @param dnaRepeats The person's count for each STR, in column order
+	 */
+	public synchronized void recordPut(String name, int[] dnaRepeats) {
+		StringBuilder line = new StringBuilder(PUT).append(',').append(name);
+		for(int count : dnaRepeats) {
+			line.append(',').append(count);
+		}
+		append(line.toString());
+	}
+
+	/**
+	 * Records that a person was removed. Called by the matcher while it holds its write lock.
+	 *
+	 * @param name The name of the person
+	 */
+	public synchronized void recordDelete(String name) {
+		append(DELETE + ',' + name);
+	}
+
+	/**
+	 * Writes the current database back to its file and discards the changes that it now includes
+	 *
+	 * @throws IOException If the database file or logs cannot be written
+	 * @throws IllegalStateException If the log was opened with a compaction threshold of 0
+	 */
+	public void compact() throws IOException {
+		if(this.compactThreshold <= 0) {
+			throw new IllegalStateException("Compaction is disabled for " + this.database);
+		}
+		synchronized(this) {
+			closeWriter();
+			if(Files.exists(this.log)) {
+				if(Files.exists(this.compacting)) {
+					// An earlier compaction failed part way, so keep its changes ahead of the newer ones
+					Files.write(this.compacting, Files.readAllBytes(this.log), StandardOpenOption.APPEND);
+					Files.delete(this.log);
+				} else {
+					Files.move(this.log, this.compacting, StandardCopyOption.ATOMIC_MOVE);
+				}
+			}
+			this.entries = 0;
+		}
+
+		// Every change in the moved log is in the written database; later changes go to the fresh log
+		Path temp = this.database.resolveSibling(this.database.getFileName() + ".tmp");
+		if(this.database.getFileName().toString().endsWith(".strdb")) {
+			this.matcher.writeSTRDB(temp);
+		} else {
+			this.matcher.writeCSV(temp, DNAFileParser.readNameHeader(this.database));
+		}
+		Files.move(temp, this.database, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		Files.deleteIfExists(this.compacting);
+
+		// The file no longer holds removed people, so neither need the matcher's columns and indexes
+		this.matcher.reclaim();
+	}
+
+	/**
+	 * Waits for any compaction in progress and closes the log
+	 *
+	 * @throws IOException If the log cannot be flushed
+	 */
+	@Override
+	public void close() throws IOException {
+		this.compactor.shutdown();
+		try {
+			this.compactor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized(this) {
+			closeWriter();
+		}
+	}
+
+	private void apply(String line) {
+		String[] fields = line.split(",");
+		if(fields[0].equals(DELETE) && fields.length == 2) {
+			this.matcher.remove(fields[1]);
+			return;
+		}
+		if(!fields[0].equals(PUT) || fields.length < 2) {
+			throw new IllegalArgumentException("Unrecognized change: " + line);
+		}
+		int[] counts = new int[fields.length - 2];
+		for(int i = 0; i < counts.length; i++) {
+			try {
+				counts[i] = Integer.parseInt(fields[i + 2]);
+			} catch(NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid STR count: " + fields[i + 2]);
+			}
+		}
+		if(!this.matcher.update(fields[1], counts)) {
+			this.matcher.add(fields[1], counts);
+		}
+	}
+
+	private void append(String line) {
+		try {
+			if(this.writer == null) {
+				this.writer = Files.newBufferedWriter(this.log, StandardCharsets.UTF_8,
+						StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+			}
+			this.writer.write(line);
+			this.writer.newLine();
+			this.writer.flush();
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		this.entries++;
+		if(this.compactThreshold > 0 && this.entries >= this.compactThreshold && !this.compactionPending) {
+			this.compactionPending = true;
+			this.compactor.execute(() -> {
+				try {
+					compact();
+				} catch(IOException e) {
+					System.err.println("Warning: could not compact database. " + e.getMessage());
+				} finally {
+					synchronized(this) {
+						this.compactionPending = false;
+					}
+				}
+			});
+		}
+	}
+
+	private void closeWriter() throws IOException {
+		if(this.writer != null) {
+			this.writer.close();
+			this.writer = null;
+		}
+	}
+
+}
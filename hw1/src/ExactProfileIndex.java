@@ -0,0 +1,187 @@
+import java.util.Arrays;
+
+/**
+ * Hash index over each person's complete vector of STR counts, for constant-time exact matching.
+ * Distinct profiles are kept in a primitive open-addressing table, and people sharing an identical profile
+ * are chained together in ascending order. People appended to the database are added to the end of their
+ * chain; removed people are skipped.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class ExactProfileIndex {
+
+	private static final int EMPTY = -1;
+
+	private final STRDatabase database;
+	private final int numRepeats;
+	// First row holding each distinct profile, or EMPTY; the table size is a power of two
+	private int[] slots;
+	private int[] slotHashes;
+	// Last row of each chain, so people with the same profile are appended in ascending order
+	private int[] tails;
+	private int mask;
+	private int distinct = 0;
+	// next[row] is the following row with the same profile, or EMPTY
+	private int[] next;
+
+	public ExactProfileIndex(STRDatabase database) {
+		this.database = database;
+		this.numRepeats = database.getRepeats().length;
+		int rows = database.size();
+
+		// Hash every row column by column, so each column is read sequentially
+		int[] hashes = new int[rows];
+		for(int c = 0; c < this.numRepeats; c++) {
+			CountColumn column = database.getColumn(c);
+			for(int row = 0; row < rows; row++) {
+				hashes[row] = hashes[row] * 31 + column.get(row);
+			}
+		}
+
+		allocate(Integer.highestOneBit(Math.max(rows * 2, 2) - 1) << 1);
+		this.next = new int[rows];
+		Arrays.fill(this.next, EMPTY);
+		for(int row = 0; row < rows; row++) {
+			insert(row, mix(hashes[row]));
+		}
+	}
+
+	/**
+	 * Adds a person newly appended to the database
+	 *
+	 * @param row The row id of the new person
+	 */
+	public void add(int row) {
+		int hash = 0;
+		for(int c = 0; c < this.numRepeats; c++) {
+			hash = hash * 31 + this.database.getColumn(c).get(row);
+		}
+		if(row >= this.next.length) {
+			int length = this.next.length;
+			this.next = Arrays.copyOf(this.next, Math.max(row + 1, length + (length >> 1) + 16));
+			Arrays.fill(this.next, length, this.next.length, EMPTY);
+		}
+		// Keep the table at most half full
+		if((this.distinct + 1) * 2 > this.slots.length) {
+			rehash(this.slots.length * 2);
+		}
+		insert(row, mix(hash));
+	}
+
+	/**
+	 * Finds the people whose counts equal the query in every STR column
+	 *
+	 * @param repeatCounts The number of each STR found in the queried sequence
+	 * @param limit The greatest number of ids to return; the lowest ids are kept
+	 * @param total A single-element array that receives the number of exactly matching people, including any
+	 *              beyond the limit
+	 * @return The sorted ids of the exactly matching people, possibly empty
+	 */
+	public int[] lookup(int[] repeatCounts, int limit, int[] total) {
+		int hash = 0;
+		for(int count : repeatCounts) {
+			hash = hash * 31 + count;
+		}
+		hash = mix(hash);
+
+		int slot = hash & this.mask;
+		while(this.slots[slot] != EMPTY) {
+			int head = this.slots[slot];
+			if(this.slotHashes[slot] == hash && matches(head, repeatCounts)) {
+				STRIndex.IntList rows = new STRIndex.IntList();
+				total[0] = 0;
+				for(int row = head; row != EMPTY; row = this.next[row]) {
+					if(this.database.isDeleted(row)) {
+						continue;
+					}
+					total[0]++;
+					if(rows.size() < limit) {
+						rows.add(row);
+					}
+				}
+				return rows.toArray();
+			}
+			slot = (slot + 1) & this.mask;
+		}
+		total[0] = 0;
+		return new int[0];
+	}
+
+	private void insert(int row, int hash) {
+		int slot = hash & this.mask;
+		while(true) {
+			int head = this.slots[slot];
+			if(head == EMPTY) {
+				this.slots[slot] = row;
+				this.slotHashes[slot] = hash;
+				this.tails[slot] = row;
+				this.distinct++;
+				return;
+			}
+			if(this.slotHashes[slot] == hash && sameProfile(head, row)) {
+				this.next[this.tails[slot]] = row;
+				this.tails[slot] = row;
+				return;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+	}
+
+	private void allocate(int capacity) {
+		this.slots = new int[capacity];
+		this.slotHashes = new int[capacity];
+		this.tails = new int[capacity];
+		this.mask = capacity - 1;
+		Arrays.fill(this.slots, EMPTY);
+	}
+
+	/**
+	 * Moves every chain into a larger table; the chains themselves are unchanged
+	 */
+	private void rehash(int capacity) {
+		int[] oldSlots = this.slots;
+		int[] oldHashes = this.slotHashes;
+		int[] oldTails = this.tails;
+		allocate(capacity);
+		for(int i = 0; i < oldSlots.length; i++) {
+			if(oldSlots[i] != EMPTY) {
+				int slot = oldHashes[i] & this.mask;
+				while(this.slots[slot] != EMPTY) {
+					slot = (slot + 1) & this.mask;
+				}
+				this.slots[slot] = oldSlots[i];
+				this.slotHashes[slot] = oldHashes[i];
+				this.tails[slot] = oldTails[i];
+			}
+		}
+	}
+
+	private boolean sameProfile(int a, int b) {
+		for(int c = 0; c < this.numRepeats; c++) {
+			CountColumn column = this.database.getColumn(c);
+			if(column.get(a) != column.get(b)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean matches(int row, int[] repeatCounts) {
+		for(int c = 0; c < this.numRepeats; c++) {
+			if(this.database.getColumn(c).get(row) != repeatCounts[c]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Spreads the bits of a polynomial hash so consecutive counts do not land in consecutive slots
+	 */
+	private static int mix(int hash) {
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+}
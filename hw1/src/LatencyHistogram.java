@@ -0,0 +1,135 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe histogram of latencies, for reporting percentiles without keeping every sample.
+ * Values below 64 are counted exactly; larger values share log-linear buckets, 32 to each power of two,
+ * so a reported percentile is within about 3% of the true value.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+	private final LongAdder total = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Records one sample
+	 *
+	 * @param nanos The latency in nanoseconds; negative values are counted as 0
+	 */
+	public void record(long nanos) {
+		nanos = Math.max(nanos, 0);
+		this.counts.incrementAndGet(bucket(nanos));
+		this.total.increment();
+		this.sum.add(nanos);
+		this.max.accumulate(nanos);
+	}
+
+	/**
+	 * Returns the number of samples recorded
+	 *
+	 * @return A whole number of samples
+	 */
+	public long getCount() {
+		return this.total.sum();
+	}
+
+	/**
+	 * Returns the largest sample recorded
+	 *
+	 * @return The latency in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public long getMax() {
+		return this.max.get();
+	}
+
+	/**
+	 * Returns the mean of the samples recorded
+	 *
+	 * @return The latency in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public double getMean() {
+		long count = this.total.sum();
+		return count > 0 ? (double) this.sum.sum() / count : 0.0;
+	}
+
+	/**
+	 * Returns the latency below which a given fraction of the samples fall
+	 *
+	 * @param percentile The fraction of samples to cover, from 0 to 100
+	 * @return The latency in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public long getPercentile(double percentile) {
+		long count = 0;
+		long[] snapshot = new long[this.counts.length()];
+		for(int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = this.counts.get(i);
+			count += snapshot[i];
+		}
+		if(count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+		long seen = 0;
+		for(int i = 0; i < snapshot.length; i++) {
+			seen += snapshot[i];
+			if(seen >= rank) {
+				return Math.min(highestValue(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Summarizes the samples as their count and the usual percentiles, in microseconds
+	 *
+	 * @return A single line such as {@code count=10 mean=12.0us p50=11us ...}
+	 */
+	public String summary() {
+		return String.format("count=%d mean=%.1fus p50=%dus p90=%dus p99=%dus p99.9=%dus max=%dus",
+				getCount(), getMean() / 1000, getPercentile(50) / 1000, getPercentile(90) / 1000,
+				getPercentile(99) / 1000, getPercentile(99.9) / 1000, getMax() / 1000);
+	}
+
+	/**
+	 * Discards every sample
+	 */
+	public void reset() {
+		for(int i = 0; i < this.counts.length(); i++) {
+			this.counts.set(i, 0);
+		}
+		this.total.reset();
+		this.sum.reset();
+		this.max.reset();
+	}
+
+	private static int bucket(long value) {
+		if(value < 2 * SUB_BUCKETS) {
+			return (int) value;
+		}
+		// Keep the top SUB_BUCKET_BITS + 1 bits of the value
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return shift * SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	/**
+	 * Returns the largest value counted in a bucket
+	 */
+	private static long highestValue(int bucket) {
+		if(bucket < 2 * SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long top = bucket - shift * SUB_BUCKETS;
+		return ((top + 1) << shift) - 1;
+	}
+
+}
@@ -1,4 +1,6 @@
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Scanner;
 import java.util.stream.Collectors;
@@ -11,37 +13,128 @@ import java.util.stream.Collectors;
  */
 public class Main {
 
+	// Number of logged changes after which the database file is rewritten in the background
+	private static final int COMPACT_THRESHOLD = 10000;
+	// Port the server listens on when none is given
+	private static final int DEFAULT_PORT = 7321;
+
+	private static STRCounter.CountMode countMode = STRCounter.CountMode.OCCURRENCES;
+	private static boolean offHeap = false;
+	// Whether the database file had rows that were skipped, which rewriting the file would lose
+	private static boolean skippedRows = false;
+
 	/**
 	 * Runs an implementation of the project which asks for a database file and a DNA sequence pattern from
-	 * standard input, then runs a search query of that DNA pattern through the database
+	 * standard input, then runs a search query of that DNA pattern through the database.
+	 * With the arguments {@code --serve <database> [port]}, the database is instead loaded once and queries are
+	 * served to local clients until the process is stopped. With {@code --longest-run}, each STR is counted by its
+	 * longest tandem run rather than by every occurrence. With {@code --off-heap}, the profiles are kept outside the
+	 * Java heap and matched by scanning rather than through heap indexes.
 	 *
-	 * @param args Command line arguments (ignored)
+	 * @param args Command line arguments: optionally {@code --longest-run} and {@code --off-heap}, then optionally
+	 *             server mode
 	 */
-	public static void main(String[] args) throws FileNotFoundException {
+	public static void main(String[] args) throws IOException {
+		while(args.length > 0 && args[0].startsWith("--") && !args[0].equals("--serve")) {
+			switch(args[0]) {
+				case "--longest-run" -> countMode = STRCounter.CountMode.LONGEST_RUN;
+				case "--off-heap" -> offHeap = true;
+				default -> throw new IllegalArgumentException("Unknown option: " + args[0]);
+			}
+			args = Arrays.copyOfRange(args, 1, args.length);
+		}
+		if(args.length >= 2 && args[0].equals("--serve")) {
+			serve(args[1], args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PORT);
+			return;
+		}
+
 		Scanner scanner = new Scanner(System.in);
 		System.out.print("What file has the DNA database? ");
 		String fileName = scanner.nextLine();
 
-		DNAFileParser fileParser = new DNAFileParser(fileName);
-		Person[] people = fileParser.getPeople();
-		String[] repeats = fileParser.getRepeats();
+		// Build the matcher and its indexes once, then reuse it for every query. Searching never changes the
+		// database, so logged changes are applied but the log is not kept open and the file is never rewritten.
+		DNAMatcher dnaMatcher = loadMatcher(fileName);
+		replayLog(dnaMatcher, fileName, 0).close();
 
-		requestSearch(scanner, repeats, people);
+		requestSearch(scanner, dnaMatcher);
 		scanner.close();
 	}
 
+	/**
+	 * Loads a database and serves match queries for it over a local socket, reporting request latency
+	 * when the process is stopped
+	 *
+	 * @param fileName The path to the database file
+	 * @param port The port to listen on
+	 */
+	private static void serve(String fileName, int port) throws IOException {
+		DNAMatcher dnaMatcher = loadMatcher(fileName);
+		DatabaseLog log = attachLog(dnaMatcher, fileName);
+		MatchServer server = new MatchServer(dnaMatcher, port);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				server.close();
+				log.close();
+			} catch(IOException e) {
+				System.err.println("Warning: could not shut down cleanly. " + e.getMessage());
+			}
+			System.err.println("Request latency: " + server.getLatency().summary());
+		}));
+		System.err.println("Serving " + fileName + " on port " + server.getPort());
+		server.serve();
+	}
+
+	private static DNAMatcher loadMatcher(String fileName) throws IOException {
+		DNAFileParser fileParser = new DNAFileParser(fileName);
+		for(String warning : fileParser.getWarnings()) {
+			System.err.println("Warning: skipped malformed row. " + warning);
+		}
+		skippedRows = !fileParser.getWarnings().isEmpty();
+		DNAMatcher dnaMatcher = offHeap
+				? new DNAMatcher(fileParser.getDatabase().toOffHeap(), false)
+				: new DNAMatcher(fileParser.getDatabase());
+		dnaMatcher.setCountMode(countMode);
+		return dnaMatcher;
+	}
+
+	/**
+	 * Brings a matcher up to date with the changes logged since its database was last written, then keeps logging.
+	 * A database file with malformed rows is never compacted, since rewriting it would delete those rows.
+	 */
+	private static DatabaseLog attachLog(DNAMatcher dnaMatcher, String fileName) throws IOException {
+		if(skippedRows) {
+			System.err.println("Warning: changes will only be kept in " + fileName + ".log until the malformed rows"
+					+ " are fixed, so that they are not lost when the database is rewritten.");
+		}
+		DatabaseLog log = replayLog(dnaMatcher, fileName, skippedRows ? 0 : COMPACT_THRESHOLD);
+		dnaMatcher.setLog(log);
+		return log;
+	}
+
+	/**
+	 * Applies the changes logged since a matcher's database was last written, without logging any more
+	 */
+	private static DatabaseLog replayLog(DNAMatcher dnaMatcher, String fileName, int compactThreshold)
+			throws IOException {
+		DatabaseLog log = new DatabaseLog(dnaMatcher, Path.of(fileName), compactThreshold);
+		for(String warning : log.replay()) {
+			System.err.println("Warning: skipped logged change. " + warning);
+		}
+		return log;
+	}
+
 	/**
 	 * Retrieves user input and searches for DNA matches
 	 *
 	 * @param scanner retrieves user input of the DNA String
-	 * @param repeats The list of STR DNA sequences that will be used to compare
-	 * @param people The people in the database that will be compared against the DNA sequence
+	 * @param dnaMatcher The matcher holding the database that will be compared against the DNA sequence
 	 */
-	private static void requestSearch(Scanner scanner, String[] repeats, Person[] people){
+	private static void requestSearch(Scanner scanner, DNAMatcher dnaMatcher){
 		String dna = "";
 
 		while (!dna.equalsIgnoreCase("Q")){
-			System.out.print("What is the DNA String or type Q to quit? ");
+			System.out.print("What is the DNA String (or a file containing it) or type Q to quit? ");
 			dna = scanner.nextLine();
 
 			if(dna.equalsIgnoreCase("Q")){
@@ -49,15 +142,23 @@ public class Main {
 				return;
 			}
 
-			MatchResult result = getDNAMatch(dna, repeats, people);
+			MatchResult result;
+			try {
+				result = getDNAMatch(dna, dnaMatcher);
+			} catch(IOException e) {
+				System.out.println("Could not read sequence file: " + e.getMessage());
+				continue;
+			}
 			switch(result.getResultType()) {
 				case EXACT_MATCH -> {
 					System.out.println("This sequence matches:");
 					System.out.println(listNames(result.getPeople()));
+					printOmitted(result);
 				}
 				case CLOSE_MATCH -> {
 					System.out.println("Closest matches are:");
 					System.out.println(listNames(result.getPeople()));
+					printOmitted(result);
 					System.out.println("With " + result.getNumSTRs() + " STRs in common");
 				}
 				case NO_MATCH -> System.out.println("This sequence matches NO MATCH.");
@@ -66,18 +167,34 @@ public class Main {
 	}
 
 	/**
-	 * Performs a DNA match query on the given DNA sequence, given a database of STRs and people in the database
+	 * Performs a DNA match query on the given DNA sequence against the matcher's database.
+	 * If the input names an existing file, the sequence is streamed from that file instead.
 	 *
-	 * @param dnaSequence The DNA sequence to be compared with the database
-	 * @param repeats The list of STR DNA sequences that will be used to compare
-	 * @param people The people in the database that will be compared against the DNA sequence
+	 * @param dnaSequence The DNA sequence, or path to a sequence file, to be compared with the database
+	 * @param dnaMatcher The matcher holding the database of STRs and people
 	 * @return A MatchResult corresponding to the success or failure of the query, with associated data if available
+	 * @throws IOException If the input names a sequence file that cannot be read
 	 */
-	private static MatchResult getDNAMatch(String dnaSequence, String[] repeats, Person[] people){
-		DNAMatcher dnaMatcher = new DNAMatcher(repeats, people);
+	private static MatchResult getDNAMatch(String dnaSequence, DNAMatcher dnaMatcher) throws IOException {
+		Path sequenceFile = Path.of(dnaSequence);
+		if(Files.isRegularFile(sequenceFile)) {
+			return dnaMatcher.match(sequenceFile);
+		}
 		return dnaMatcher.match(dnaSequence);
 	}
 
+	/**
+	 * Reports how many people matched as well as those listed but were left out of the result
+	 *
+	 * @param result The result that was listed
+	 */
+	private static void printOmitted(MatchResult result) {
+		int omitted = result.getTotalMatches() - result.size();
+		if(omitted > 0) {
+			System.out.println("...and " + omitted + " more");
+		}
+	}
+
 	/**
 	 * Generates a list of people's names, separated by a specified delimiter
 	 *
@@ -0,0 +1,151 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, least-recently-used cache of match results keyed by the STR counts of the query.
+ * Many different sequences reduce to the same counts, so a repeated profile skips matching entirely.
+ * All methods are synchronized so the cache can be shared by concurrent queries.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class MatchCache {
+
+	private final int maxEntries;
+	private final LinkedHashMap<Profile, MatchResult> entries;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	public MatchCache(int maxEntries) {
+		if(maxEntries <= 0) {
+			throw new IllegalArgumentException("Cache size must be positive: " + maxEntries);
+		}
+		this.maxEntries = maxEntries;
+		// Access order, so the eldest entry is always the least recently used
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Profile, MatchResult> eldest) {
+				if(size() > MatchCache.this.maxEntries) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached result for a set of STR counts, if there is one
+	 *
+	 * @param repeatCounts The number of each STR found in the queried sequence
+	 * @return The cached MatchResult, or null if the counts have not been matched since they were last evicted
+	 */
+	public synchronized MatchResult get(int[] repeatCounts) {
+		MatchResult result = this.entries.get(new Profile(repeatCounts));
+		if(result == null) {
+			this.misses++;
+		} else {
+			this.hits++;
+		}
+		return result;
+	}
+
+	/**
+	 * Caches the result of matching a set of STR counts, evicting the least recently used entry if the cache is full
+	 *
+	 * @param repeatCounts The number of each STR found in the queried sequence
+	 * @param result The result of matching those counts
+	 */
+	public synchronized void put(int[] repeatCounts, MatchResult result) {
+		this.entries.put(new Profile(repeatCounts.clone()), result);
+	}
+
+	/**
+	 * Discards every cached result, such as when the database they were computed from changes
+	 */
+	public synchronized void invalidate() {
+		this.entries.clear();
+	}
+
+	/**
+	 * Returns the number of results currently cached
+	 *
+	 * @return A whole number of entries
+	 */
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Returns the greatest number of results the cache will hold
+	 *
+	 * @return A whole number of entries
+	 */
+	public int getMaxEntries() {
+		return this.maxEntries;
+	}
+
+	/**
+	 * Returns the number of lookups answered from the cache
+	 *
+	 * @return A whole number of lookups
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * Returns the number of lookups that found nothing cached
+	 *
+	 * @return A whole number of lookups
+	 */
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * Returns the number of entries removed to make room for newer ones
+	 *
+	 * @return A whole number of entries
+	 */
+	public synchronized long getEvictions() {
+		return this.evictions;
+	}
+
+	/**
+	 * Returns the fraction of lookups answered from the cache
+	 *
+	 * @return A ratio between 0 and 1, or 0 if there have been no lookups
+	 */
+	public synchronized double getHitRate() {
+		long lookups = this.hits + this.misses;
+		return lookups == 0 ? 0.0 : (double) this.hits / lookups;
+	}
+
+	/**
+	 * Cache key comparing STR count vectors by value
+	 */
+	private static final class Profile {
+
+		private final int[] counts;
+		private final int hash;
+
+		private Profile(int[] counts) {
+			this.counts = counts;
+			this.hash = Arrays.hashCode(counts);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Profile && Arrays.equals(this.counts, ((Profile) o).counts);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+	}
+}
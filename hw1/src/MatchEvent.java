@@ -0,0 +1,59 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for a single DNA query, so production latency can be broken down by phase in a
+ * recording without attaching a profiler. Enable it with, for example,
+ * {@code -XX:StartFlightRecording:settings=profile} or by enabling {@code dna.Match} in a custom settings file.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+@Name("dna.Match")
+@Label("DNA Match")
+@Category("DNA")
+@Description("A query matched against the STR database")
+public class MatchEvent extends jdk.jfr.Event {
+
+	@Label("Counting")
+	@Timespan(Timespan.NANOSECONDS)
+	long countingNanos;
+
+	@Label("Waiting")
+	@Description("Time spent waiting for a change to the database to finish")
+	@Timespan(Timespan.NANOSECONDS)
+	long waitingNanos;
+
+	@Label("Lookup")
+	@Description("Time spent in the result cache and exact-profile hash")
+	@Timespan(Timespan.NANOSECONDS)
+	long lookupNanos;
+
+	@Label("Comparison")
+	@Timespan(Timespan.NANOSECONDS)
+	long comparisonNanos;
+
+	@Label("Result")
+	@Timespan(Timespan.NANOSECONDS)
+	long resultNanos;
+
+	@Label("Result Type")
+	String resultType;
+
+	@Label("Cache Hit")
+	boolean cacheHit;
+
+	@Label("Exact Index Hit")
+	boolean exactIndexHit;
+
+	@Label("People Compared")
+	long peopleCompared;
+
+	@Label("Comparisons Skipped")
+	@Description("Column comparisons avoided by stopping at a person's first mismatch")
+	long comparisonsSkipped;
+
+}
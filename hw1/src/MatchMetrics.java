@@ -0,0 +1,297 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals of where the time of DNA queries goes and what each query touched, kept with
+ * {@link LongAdder}s so concurrent queries can record without contending on a lock.
+ * <p>
+ * A query is timed phase by phase: {@link #begin()} starts a {@link Query}, {@link Query#mark(Phase)} charges the
+ * time since the previous mark to a phase, and {@link #end(Query, MatchResult)} adds the query to the totals and,
+ * when Flight Recorder is running with the event enabled, commits a {@link MatchEvent}.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class MatchMetrics {
+
+	/**
+	 * The stages of a query, in the order they run
+	 */
+	public enum Phase {
+		/** Counting the STRs of the queried sequence */
+		COUNTING,
+		/** Waiting for a change to the database to finish */
+		WAITING,
+		/** Looking the counts up in the result cache */
+		CACHE,
+		/** Looking the counts up in the exact-profile hash */
+		EXACT_LOOKUP,
+		/** Comparing against profiles for the closest matches */
+		COMPARISON,
+		/** Building the result */
+		RESULT
+	}
+
+	private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+	private final LongAdder queries = new LongAdder();
+	private final LongAdder cacheHits = new LongAdder();
+	private final LongAdder exactIndexHits = new LongAdder();
+	private final LongAdder peopleCompared = new LongAdder();
+	private final LongAdder comparisonsSkipped = new LongAdder();
+	private final LongAdder noMatches = new LongAdder();
+
+	public MatchMetrics() {
+		for(int i = 0; i < this.phaseNanos.length; i++) {
+			this.phaseNanos[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Starts timing a query
+	 *
+	 * @return The query, whose first phase starts now
+	 */
+	public Query begin() {
+		return new Query();
+	}
+
+	/**
+	 * Adds a finished query to the totals
+	 *
+	 * @param query The query, with every phase it ran marked
+	 * @param result The result the query returned
+	 */
+	public void end(Query query, MatchResult result) {
+		for(int i = 0; i < this.phaseNanos.length; i++) {
+			this.phaseNanos[i].add(query.nanos[i]);
+		}
+		this.queries.increment();
+		if(query.cacheHit) {
+			this.cacheHits.increment();
+		}
+		if(query.exactIndexHit) {
+			this.exactIndexHits.increment();
+		}
+		this.peopleCompared.add(query.peopleCompared);
+		this.comparisonsSkipped.add(query.comparisonsSkipped);
+		if(result.getResultType() == MatchResult.ResultType.NO_MATCH) {
+			this.noMatches.increment();
+		}
+
+		MatchEvent event = query.event;
+		if(event.shouldCommit()) {
+			event.countingNanos = query.nanos[Phase.COUNTING.ordinal()];
+			event.waitingNanos = query.nanos[Phase.WAITING.ordinal()];
+			event.lookupNanos = query.nanos[Phase.CACHE.ordinal()] + query.nanos[Phase.EXACT_LOOKUP.ordinal()];
+			event.comparisonNanos = query.nanos[Phase.COMPARISON.ordinal()];
+			event.resultNanos = query.nanos[Phase.RESULT.ordinal()];
+			event.resultType = result.getResultType().name();
+			event.cacheHit = query.cacheHit;
+			event.exactIndexHit = query.exactIndexHit;
+			event.peopleCompared = query.peopleCompared;
+			event.comparisonsSkipped = query.comparisonsSkipped;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Copies the current totals
+	 *
+	 * @return A snapshot that does not change as later queries are recorded
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(this);
+	}
+
+	/**
+	 * Discards every total
+	 */
+	public void reset() {
+		for(LongAdder adder : this.phaseNanos) {
+			adder.reset();
+		}
+		this.queries.reset();
+		this.cacheHits.reset();
+		this.exactIndexHits.reset();
+		this.peopleCompared.reset();
+		this.comparisonsSkipped.reset();
+		this.noMatches.reset();
+	}
+
+	/**
+	 * Timings and counters of a single query in progress. A query is used by one thread only.
+	 */
+	public static final class Query {
+
+		private final long[] nanos = new long[Phase.values().length];
+		private final MatchEvent event = new MatchEvent();
+		private long last;
+		private boolean cacheHit = false;
+		private boolean exactIndexHit = false;
+		private long peopleCompared = 0;
+		private long comparisonsSkipped = 0;
+
+		private Query() {
+			this.event.begin();
+			this.last = System.nanoTime();
+		}
+
+		/**
+		 * Charges the time since the previous mark, or since the query began, to a phase
+		 *
+		 * @param phase The phase that has just finished
+		 */
+		public void mark(Phase phase) {
+			long now = System.nanoTime();
+			this.nanos[phase.ordinal()] += now - this.last;
+			this.last = now;
+		}
+
+		/**
+		 * Records that the query was answered from the result cache
+		 */
+		public void cacheHit() {
+			this.cacheHit = true;
+		}
+
+		/**
+		 * Records that the query was answered by the exact-profile hash
+		 */
+		public void exactIndexHit() {
+			this.exactIndexHit = true;
+		}
+
+		/**
+		 * Records that profiles were compared against the query
+		 *
+		 * @param people The number of people compared
+		 */
+		public void compared(long people) {
+			this.peopleCompared += people;
+		}
+
+		/**
+		 * Records column comparisons that were never made because a person had already been ruled out
+		 *
+		 * @param comparisons The number of comparisons skipped
+		 */
+		public void skipped(long comparisons) {
+			this.comparisonsSkipped += comparisons;
+		}
+	}
+
+	/**
+	 * Totals of every query recorded up to one moment
+	 */
+	public static final class Snapshot {
+
+		private final long[] phaseNanos = new long[Phase.values().length];
+		private final long queries;
+		private final long cacheHits;
+		private final long exactIndexHits;
+		private final long peopleCompared;
+		private final long comparisonsSkipped;
+		private final long noMatches;
+
+		private Snapshot(MatchMetrics metrics) {
+			for(int i = 0; i < this.phaseNanos.length; i++) {
+				this.phaseNanos[i] = metrics.phaseNanos[i].sum();
+			}
+			this.queries = metrics.queries.sum();
+			this.cacheHits = metrics.cacheHits.sum();
+			this.exactIndexHits = metrics.exactIndexHits.sum();
+			this.peopleCompared = metrics.peopleCompared.sum();
+			this.comparisonsSkipped = metrics.comparisonsSkipped.sum();
+			this.noMatches = metrics.noMatches.sum();
+		}
+
+		/**
+		 * Returns the total time spent in a phase by every query
+		 *
+		 * @param phase The phase
+		 * @return A number of nanoseconds
+		 */
+		public long getNanos(Phase phase) {
+			return this.phaseNanos[phase.ordinal()];
+		}
+
+		/**
+		 * Returns the mean time a query spent in a phase
+		 *
+		 * @param phase The phase
+		 * @return A number of nanoseconds, or 0 if no query has been recorded
+		 */
+		public double getMeanNanos(Phase phase) {
+			return this.queries > 0 ? (double) getNanos(phase) / this.queries : 0.0;
+		}
+
+		/**
+		 * Returns the number of queries recorded
+		 *
+		 * @return A whole number of queries
+		 */
+		public long getQueries() {
+			return this.queries;
+		}
+
+		/**
+		 * Returns the number of queries answered from the result cache
+		 *
+		 * @return A whole number of queries
+		 */
+		public long getCacheHits() {
+			return this.cacheHits;
+		}
+
+		/**
+		 * Returns the number of queries answered by the exact-profile hash
+		 *
+		 * @return A whole number of queries
+		 */
+		public long getExactIndexHits() {
+			return this.exactIndexHits;
+		}
+
+		/**
+		 * Returns the total number of profiles compared against queries
+		 *
+		 * @return A whole number of people
+		 */
+		public long getPeopleCompared() {
+			return this.peopleCompared;
+		}
+
+		/**
+		 * Returns the total number of column comparisons skipped by stopping at a person's first mismatch
+		 *
+		 * @return A whole number of comparisons
+		 */
+		public long getComparisonsSkipped() {
+			return this.comparisonsSkipped;
+		}
+
+		/**
+		 * Returns the number of queries that matched nobody
+		 *
+		 * @return A whole number of queries
+		 */
+		public long getNoMatches() {
+			return this.noMatches;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder("queries=").append(this.queries);
+			for(Phase phase : Phase.values()) {
+				builder.append(' ').append(phase.name().toLowerCase())
+						.append(String.format("=%.1fus", getMeanNanos(phase) / 1000));
+			}
+			return builder.append(" cacheHits=").append(this.cacheHits)
+					.append(" exactIndexHits=").append(this.exactIndexHits)
+					.append(" peopleCompared=").append(this.peopleCompared)
+					.append(" comparisonsSkipped=").append(this.comparisonsSkipped)
+					.append(" noMatches=").append(this.noMatches)
+					.toString();
+		}
+	}
+
+}
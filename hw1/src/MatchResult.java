@@ -1,20 +1,52 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
 /**
  * Result container describing the success of a DNA search query and
  * the relevant data associated with that result.
+ * <p>
+ * A result holds its own copy of every person it returns, taken when it is created, so it stays the same however
+ * the database changes afterwards. The copy stays small because DNAMatcher limits how many people a match returns.
  *
  * @author Eli Blaney
  * @version 1.0
  */
-public class MatchResult {
+public class MatchResult implements Iterable<Person> {
 
 	private final ResultType resultType;
 	private final Person[] people;
 	private final int numSTRs;
+	private final double[] distances;
+	private final int totalMatches;
 
 	public MatchResult(ResultType resultType, Person[] people, int numSTRs) {
+		this(resultType, people, numSTRs, null);
+	}
+
+	public MatchResult(ResultType resultType, Person[] people, int numSTRs, double[] distances) {
 		this.resultType = resultType;
 		this.people = people;
 		this.numSTRs = numSTRs;
+		this.distances = distances;
+		this.totalMatches = people == null ? 0 : people.length;
+	}
+
+	/**
+	 * Creates a result for rows of a database, reading the people out of the database at once. The caller must
+	 * keep the database from changing until this returns; DNAMatcher holds its read lock.
+	 *
+	 * @param resultType The type of result given by the query
+	 * @param database The database the rows belong to
+	 * @param rows The ids of the people returned by the query
+	 * @param numSTRs The number of STRs those people have in common with the query
+	 * @param totalMatches The number of people that matched equally well, which may exceed the rows returned
+	 */
+	public MatchResult(ResultType resultType, STRDatabase database, int[] rows, int numSTRs, int totalMatches) {
+		this.resultType = resultType;
+		this.people = database.getPeople(rows);
+		this.numSTRs = numSTRs;
+		this.distances = null;
+		this.totalMatches = totalMatches;
 	}
 
 	/**
@@ -35,6 +67,68 @@ public class MatchResult {
 		return people;
 	}
 
+	/**
+	 * Returns one page of the people returned by the search query
+	 *
+	 * @param from The position of the first person on the page, inclusive
+	 * @param to The position of the last person on the page, exclusive
+	 * @return An array of Person objects corresponding to that range of the result
+	 */
+	public Person[] getPeople(int from, int to) {
+		if(from < 0 || to > size() || from > to) {
+			throw new IndexOutOfBoundsException("Page " + from + " to " + to + " of " + size() + " people");
+		}
+		Person[] page = new Person[to - from];
+		for(int i = from; i < to; i++) {
+			page[i - from] = people[i];
+		}
+		return page;
+	}
+
+	/**
+	 * Returns the number of people returned by the search query
+	 *
+	 * @return A whole number of people
+	 */
+	public int size() {
+		return people == null ? 0 : people.length;
+	}
+
+	/**
+	 * Returns the number of people who matched equally well. This can be greater than {@link #size()}
+	 * when the number of results returned was limited.
+	 *
+	 * @return A whole number of people
+	 */
+	public int getTotalMatches() {
+		return totalMatches;
+	}
+
+	/**
+	 * Iterates over the people returned by the search query
+	 *
+	 * @return An iterator over the matching people
+	 */
+	@Override
+	public Iterator<Person> iterator() {
+		return new Iterator<>() {
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < size();
+			}
+
+			@Override
+			public Person next() {
+				if(!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return people[next++];
+			}
+		};
+	}
+
 	/**
 	 * Returns the number of STRs that match between the search pattern and data
 	 *
@@ -44,6 +138,15 @@ public class MatchResult {
 		return numSTRs;
 	}
 
+	/**
+	 * Returns the STR distance from the query to each returned person, for nearest-neighbour queries
+	 *
+	 * @return An array parallel to {@link #getPeople()}, or null if the query did not rank people by distance
+	 */
+	public double[] getDistances() {
+		return distances;
+	}
+
 	/**
 	 * Representation of the status returned by a query
 	 *
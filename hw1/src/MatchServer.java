@@ -0,0 +1,206 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Long-running server answering DNA match queries from local clients over a line-delimited text protocol,
+ * so the database is loaded and indexed once rather than on every launch.
+ * <p>
+ * Each request is one line and receives one line in reply:
+ * <ul>
+ *     <li>{@code MATCH <sequence>}, or just the sequence, replies {@code EXACT <names>},
+ *     {@code CLOSE <STRs in common> <names>} or {@code NONE}</li>
+ *     <li>{@code NEAREST <k> <sequence>} replies {@code NEAREST <name>:<distance>,...}</li>
+ *     <li>{@code ADD <name>,<counts>...}, {@code UPDATE <name>,<counts>...} and {@code REMOVE <name>}
+ *     reply {@code OK} or {@code NOT_FOUND}</li>
+ *     <li>{@code STATS} replies with the percentiles of request latency</li>
+ *     <li>{@code METRICS} replies with the matcher's mean time per query phase and its counters</li>
+ *     <li>{@code QUIT} closes the connection</li>
+ * </ul>
+ * Names in replies are separated by commas. A request that cannot be served replies {@code ERROR <message>}.
+ * Every connection is served by its own thread; queries run concurrently against the shared matcher.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class MatchServer implements Closeable {
+
+	private final DNAMatcher matcher;
+	private final ServerSocket socket;
+	private final ExecutorService connections;
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	/**
+	 * Opens a server socket on the loopback interface. No connections are accepted until {@link #serve()} is called.
+	 *
+	 * @param matcher The matcher that answers every query
+	 * @param port The port to listen on, or 0 to pick a free one
+	 * @throws IOException If the port cannot be bound
+	 */
+	public MatchServer(DNAMatcher matcher, int port) throws IOException {
+		this.matcher = matcher;
+		this.socket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+		this.connections = Executors.newCachedThreadPool(task -> {
+			Thread thread = new Thread(task, "match-connection");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Returns the port the server is listening on
+	 *
+	 * @return A port number
+	 */
+	public int getPort() {
+		return this.socket.getLocalPort();
+	}
+
+	/**
+	 * Returns the latency of every request served so far, measured from reading the request to writing the reply
+	 *
+	 * @return The live histogram of request latencies
+	 */
+	public LatencyHistogram getLatency() {
+		return this.latency;
+	}
+
+	/**
+	 * Accepts connections until the server is closed, handing each to its own thread
+	 *
+	 * @throws IOException If accepting a connection fails for a reason other than the server closing
+	 */
+	public void serve() throws IOException {
+		while(!this.socket.isClosed()) {
+			Socket client;
+			try {
+				client = this.socket.accept();
+			} catch(SocketException e) {
+				if(this.socket.isClosed()) {
+					return;
+				}
+				throw e;
+			}
+			this.connections.execute(() -> handle(client));
+		}
+	}
+
+	/**
+	 * Stops accepting connections and drops any that are open
+	 *
+	 * @throws IOException If the server socket cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		this.socket.close();
+		this.connections.shutdownNow();
+	}
+
+	private void handle(Socket client) {
+		try(client;
+			BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+			BufferedWriter out = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while((line = in.readLine()) != null) {
+				long start = System.nanoTime();
+				if(line.strip().equalsIgnoreCase("QUIT")) {
+					return;
+				}
+				String reply;
+				try {
+					reply = respond(line.strip());
+				} catch(RuntimeException e) {
+					reply = "ERROR " + e.getMessage();
+				}
+				out.write(reply);
+				out.newLine();
+				out.flush();
+				this.latency.record(System.nanoTime() - start);
+			}
+		} catch(IOException e) {
+			// The client went away; there is nobody left to reply to
+		}
+	}
+
+	/**
+	 * Serves a single request line
+	 *
+	 * @param request The request, without its line terminator
+	 * @return The reply, without its line terminator
+	 */
+	private String respond(String request) {
+		int space = request.indexOf(' ');
+		String command = space < 0 ? request.toUpperCase() : request.substring(0, space).toUpperCase();
+		String argument = space < 0 ? "" : request.substring(space + 1).strip();
+
+		switch(command) {
+			case "MATCH":
+				return describe(this.matcher.match(argument));
+			case "NEAREST": {
+				int split = argument.indexOf(' ');
+				if(split < 0) {
+					throw new IllegalArgumentException("Usage: NEAREST <k> <sequence>");
+				}
+				int k = Integer.parseInt(argument.substring(0, split));
+				if(k < 1) {
+					throw new IllegalArgumentException("NEAREST needs a positive number of people: " + k);
+				}
+				MatchResult result = this.matcher.matchNearest(argument.substring(split + 1).strip(), k);
+				Person[] people = result.getPeople();
+				double[] distances = result.getDistances();
+				StringBuilder reply = new StringBuilder("NEAREST");
+				for(int i = 0; people != null && i < people.length; i++) {
+					reply.append(i == 0 ? ' ' : ',').append(people[i].getName()).append(':').append(distances[i]);
+				}
+				return reply.toString();
+			}
+			case "ADD":
+			case "UPDATE": {
+				String[] fields = argument.split(",");
+				int[] counts = new int[fields.length - 1];
+				for(int i = 0; i < counts.length; i++) {
+					counts[i] = Integer.parseInt(fields[i + 1].strip());
+				}
+				if(command.equals("ADD")) {
+					this.matcher.add(fields[0].strip(), counts);
+					return "OK";
+				}
+				return this.matcher.update(fields[0].strip(), counts) ? "OK" : "NOT_FOUND";
+			}
+			case "REMOVE":
+				return this.matcher.remove(argument) ? "OK" : "NOT_FOUND";
+			case "STATS":
+				return "STATS " + this.latency.summary();
+			case "METRICS":
+				return "METRICS " + this.matcher.getMetrics().snapshot();
+			default:
+				// A bare sequence is a match request
+				return describe(this.matcher.match(request));
+		}
+	}
+
+	private static String describe(MatchResult result) {
+		return switch(result.getResultType()) {
+			case EXACT_MATCH -> "EXACT " + listNames(result.getPeople());
+			case CLOSE_MATCH -> "CLOSE " + result.getNumSTRs() + " " + listNames(result.getPeople());
+			case NO_MATCH -> "NONE";
+		};
+	}
+
+	private static String listNames(Person... people) {
+		return Arrays.stream(people).map(Person::getName).collect(Collectors.joining(","));
+	}
+
+}
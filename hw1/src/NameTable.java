@@ -0,0 +1,288 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Table of the names of people in the profile database, packed into a single UTF-8 byte blob
+ * rather than one String object per person. The blob may live on the heap or in a memory-mapped file.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class NameTable {
+
+	private ByteBuffer bytes;
+	// Name i occupies bytes from offsets[i] up to (but excluding) offsets[i + 1]
+	private IntBuffer offsets;
+	private int size;
+	// Names appended after a table held in a buffer, or null if there are none
+	private NameTable overflow = null;
+	// Rows holding each name, built on first lookup: a map for a table on the heap, or for a table off the heap
+	// an open-addressing table of row ids plus one in a direct buffer, so the heap does not grow with its size
+	private Map<String, STRIndex.IntList> rowsByName = null;
+	private IntBuffer rowSlots = null;
+
+	public NameTable(String[] names) {
+		int[] offsets = new int[names.length + 1];
+		byte[] packed = new byte[16];
+		int length = 0;
+		for(int i = 0; i < names.length; i++) {
+			byte[] name = names[i].getBytes(StandardCharsets.UTF_8);
+			if(length + name.length > packed.length) {
+				packed = Arrays.copyOf(packed, Math.max(packed.length * 2, length + name.length));
+			}
+			System.arraycopy(name, 0, packed, length, name.length);
+			length += name.length;
+			offsets[i + 1] = length;
+		}
+		this.bytes = ByteBuffer.wrap(Arrays.copyOf(packed, length));
+		this.offsets = IntBuffer.wrap(offsets);
+		this.size = names.length;
+	}
+
+	/**
+	 * Creates a name table from names already packed into a UTF-8 byte array
+	 *
+	 * @param bytes The UTF-8 bytes of every name, back to back
+	 * @param offsets The start offset of each name within the bytes, followed by the total length
+	 */
+	public NameTable(byte[] bytes, int[] offsets) {
+		this.bytes = ByteBuffer.wrap(bytes);
+		this.offsets = IntBuffer.wrap(offsets);
+		this.size = offsets.length - 1;
+	}
+
+	/**
+	 * Views a name table already packed into buffers, such as regions of a memory-mapped file
+	 *
+	 * @param bytes The UTF-8 bytes of every name, back to back
+	 * @param offsets The little-endian start offset of each name within the bytes, followed by the total length
+	 */
+	public NameTable(ByteBuffer bytes, ByteBuffer offsets) {
+		this.bytes = bytes.slice();
+		this.offsets = offsets.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+		this.size = this.offsets.limit() - 1;
+	}
+
+	/**
+	 * Returns the name of a person
+	 *
+	 * @param row The id of the person
+	 * @return A String corresponding to the name of the person
+	 */
+	public String get(int row) {
+		if(row >= this.size) {
+			return this.overflow.get(row - this.size);
+		}
+		int start = this.offsets.get(row);
+		byte[] name = new byte[this.offsets.get(row + 1) - start];
+		this.bytes.get(start, name);
+		return new String(name, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Finds every row holding a name
+	 *
+	 * @param name The name to look for
+	 * @return The ids of the matching rows in ascending order, possibly empty
+	 */
+	public int[] find(String name) {
+		STRIndex.IntList rows = new STRIndex.IntList();
+		find(name, 0, rows);
+		return rows.toArray();
+	}
+
+	private void find(String name, int first, STRIndex.IntList rows) {
+		if(isOffHeap()) {
+			findOffHeap(name.getBytes(StandardCharsets.UTF_8), first, rows);
+		} else {
+			if(this.rowsByName == null) {
+				this.rowsByName = new HashMap<>();
+				for(int row = 0; row < this.size; row++) {
+					this.rowsByName.computeIfAbsent(get(row), k -> new STRIndex.IntList()).add(row);
+				}
+			}
+			STRIndex.IntList found = this.rowsByName.get(name);
+			if(found != null) {
+				for(int row : found.toArray()) {
+					rows.add(first + row);
+				}
+			}
+		}
+		if(this.overflow != null) {
+			this.overflow.find(name, first + this.size, rows);
+		}
+	}
+
+	private void findOffHeap(byte[] name, int first, STRIndex.IntList rows) {
+		if(this.rowSlots == null) {
+			// At most half full, so probes stay short
+			int capacity = Integer.highestOneBit(Math.max(this.size, 1) * 4);
+			this.rowSlots = ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder())
+					.asIntBuffer();
+			for(int row = 0; row < this.size; row++) {
+				int slot = hash(row) & (capacity - 1);
+				while(this.rowSlots.get(slot) != 0) {
+					slot = (slot + 1) & (capacity - 1);
+				}
+				this.rowSlots.put(slot, row + 1);
+			}
+		}
+		// Rows were inserted in order, so equal names are met in ascending order along the probe sequence
+		int mask = this.rowSlots.capacity() - 1;
+		int hash = 0;
+		for(byte b : name) {
+			hash = 31 * hash + b;
+		}
+		int entry;
+		for(int slot = mix(hash) & mask; (entry = this.rowSlots.get(slot)) != 0; slot = (slot + 1) & mask) {
+			if(matches(entry - 1, name)) {
+				rows.add(first + entry - 1);
+			}
+		}
+	}
+
+	private int hash(int row) {
+		int hash = 0;
+		for(int i = this.offsets.get(row); i < this.offsets.get(row + 1); i++) {
+			hash = 31 * hash + this.bytes.get(i);
+		}
+		return mix(hash);
+	}
+
+	private static int mix(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	private boolean matches(int row, byte[] name) {
+		int start = this.offsets.get(row);
+		if(this.offsets.get(row + 1) - start != name.length) {
+			return false;
+		}
+		for(int i = 0; i < name.length; i++) {
+			if(this.bytes.get(start + i) != name[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of names in the table
+	 *
+	 * @return A whole number of people
+	 */
+	public int size() {
+		return this.overflow == null ? this.size : this.size + this.overflow.size();
+	}
+
+	/**
+	 * Returns whether the names are held outside the Java heap
+	 *
+	 * @return true if the names are read from direct or mapped buffers
+	 */
+	public boolean isOffHeap() {
+		return this.bytes.isDirect();
+	}
+
+	/**
+	 * Copies the names into direct buffers outside the Java heap. A table already held in direct or mapped
+	 * buffers is returned as it is.
+	 *
+	 * @return A table reading its names from off-heap memory
+	 */
+	public NameTable toOffHeap() {
+		return toOffHeap(new BitSet());
+	}
+
+	/**
+	 * Copies the names of every row not in a set into direct buffers outside the Java heap, name by name, so even
+	 * a large table is never copied onto the heap on its way
+	 *
+	 * @param removed The rows to leave out
+	 * @return A table reading the remaining names, in row order, from off-heap memory
+	 */
+	public NameTable toOffHeap(BitSet removed) {
+		if(isOffHeap() && this.offsets.isDirect() && this.overflow == null && removed.isEmpty()) {
+			return this;
+		}
+		int rows = 0;
+		int length = 0;
+		for(int row = 0; row < size(); row++) {
+			if(!removed.get(row)) {
+				rows++;
+				length += byteLength(row);
+			}
+		}
+		ByteBuffer bytes = ByteBuffer.allocateDirect(length);
+		ByteBuffer offsets = ByteBuffer.allocateDirect((rows + 1) * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		int i = 0;
+		int position = 0;
+		for(int row = 0; row < size(); row++) {
+			if(!removed.get(row)) {
+				position = copyName(row, bytes, position);
+				offsets.putInt(++i * Integer.BYTES, position);
+			}
+		}
+		return new NameTable(bytes, offsets);
+	}
+
+	private int byteLength(int row) {
+		if(row >= this.size) {
+			return this.overflow.byteLength(row - this.size);
+		}
+		return this.offsets.get(row + 1) - this.offsets.get(row);
+	}
+
+	/**
+	 * Copies the UTF-8 bytes of a name into a buffer, returning the position just after them
+	 */
+	private int copyName(int row, ByteBuffer to, int position) {
+		if(row >= this.size) {
+			return this.overflow.copyName(row - this.size, to, position);
+		}
+		int start = this.offsets.get(row);
+		int length = this.offsets.get(row + 1) - start;
+		to.put(position, this.bytes, start, length);
+		return position + length;
+	}
+
+	/**
+	 * Adds a name for a new person at the end of the table. The heap arrays grow with spare capacity so repeated
+	 * appends stay cheap. A table held in a direct or mapped buffer is never copied: appended names go to a small
+	 * heap table after it, until the table is next copied off the heap.
+	 *
+	 * @param name The name of the new person
+	 */
+	public void append(String name) {
+		if(this.overflow != null || !this.bytes.hasArray()) {
+			if(this.overflow == null) {
+				this.overflow = new NameTable(new String[0]);
+			}
+			this.overflow.append(name);
+			return;
+		}
+		byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+		int length = this.offsets.get(this.size);
+		if(length + encoded.length > this.bytes.capacity()) {
+			byte[] grown = new byte[Math.max(length + encoded.length, length + (length >> 1) + 16)];
+			this.bytes.get(0, grown, 0, length);
+			this.bytes = ByteBuffer.wrap(grown);
+		}
+		if(!this.offsets.hasArray() || this.size + 2 > this.offsets.capacity()) {
+			int[] grown = new int[this.size + (this.size >> 1) + 16];
+			this.offsets.get(0, grown, 0, this.size + 1);
+			this.offsets = IntBuffer.wrap(grown);
+		}
+		this.bytes.put(length, encoded);
+		this.offsets.put(++this.size, length + encoded.length);
+		if(this.rowsByName != null) {
+			this.rowsByName.computeIfAbsent(name, k -> new STRIndex.IntList()).add(this.size - 1);
+		}
+	}
+}
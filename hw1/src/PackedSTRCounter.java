@@ -0,0 +1,182 @@
+import java.util.Arrays;
+
+/**
+ * Bit-parallel STR counter over a {@link PackedSequence}, comparing 32 bases at once with whole-word operations.
+ * <p>
+ * For each word of the sequence, a mask of the positions holding each base is built once. The positions where an
+ * STR starts are then the AND of the masks for its successive bases, each shifted back by that base's offset in
+ * the STR, so finding every occurrence costs a few operations per 32 bases rather than a comparison per base.
+ * Only the positions that do start an occurrence are then visited one by one, to apply the same non-overlapping
+ * rule as {@link STRCounter} or to follow tandem runs.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class PackedSTRCounter {
+
+	// The low bit of every 2-bit base
+	private static final long EVEN_BITS = 0x5555555555555555L;
+	// Number of words whose base masks are built at once; with the lookahead they stay within the L1 cache
+	private static final int BLOCK_WORDS = 1024;
+
+	private final String[] repeats;
+	// The 2-bit code of each base of each STR, or null for an STR that can never match a packed sequence
+	private final int[][] codes;
+	// Extra words past a block that the longest STR can reach into
+	private final int lookahead;
+
+	public PackedSTRCounter(String[] repeats) {
+		this.repeats = repeats;
+		this.codes = new int[repeats.length][];
+		int longest = 1;
+		for(int r = 0; r < repeats.length; r++) {
+			int[] code = new int[repeats[r].length()];
+			for(int j = 0; j < code.length; j++) {
+				code[j] = PackedSequence.code(repeats[r].charAt(j));
+			}
+			if(code.length > 0 && Arrays.stream(code).allMatch(c -> c >= 0)) {
+				this.codes[r] = code;
+				longest = Math.max(longest, code.length);
+			}
+		}
+		this.lookahead = (longest - 1) / PackedSequence.BASES_PER_WORD + 1;
+	}
+
+	/**
+	 * Counts the non-overlapping occurrences of every STR within a packed sequence, giving the same counts as
+	 * {@link STRCounter#count(CharSequence)} on the unpacked sequence. STRs holding anything but A, C, G and T
+	 * are never found, since a packed sequence does not keep the original invalid characters.
+	 *
+	 * @param sequence The DNA sequence to be searched for STRs
+	 * @return The number of occurrences of each STR, in the same order as the STRs given to this counter
+	 */
+	public int[] count(PackedSequence sequence) {
+		return scan(sequence, false);
+	}
+
+	/**
+	 * Finds the longest tandem run of every STR within a packed sequence, that is the greatest number of times
+	 * it is repeated back to back
+	 *
+	 * @param sequence The DNA sequence to be searched for STRs
+	 * @return The length of the longest run of each STR, in the same order as the STRs given to this counter
+	 */
+	public int[] longestRuns(PackedSequence sequence) {
+		return scan(sequence, true);
+	}
+
+	/**
+	 * Returns the STR sequences recognized by this counter
+	 *
+	 * @return A string array containing each STR sequence
+	 */
+	public String[] getRepeats() {
+		return this.repeats;
+	}
+
+	private int[] scan(PackedSequence sequence, boolean runs) {
+		int numRepeats = this.repeats.length;
+		int[] result = new int[numRepeats];
+		// Count mode: the first position free of the previously counted occurrence of each STR
+		long[] nextFree = new long[numRepeats];
+		// Run mode: for each STR and each start position modulo its length, the last start seen and the run ending there
+		long[][] lastStart = new long[numRepeats][];
+		int[][] run = new int[numRepeats][];
+		if(runs) {
+			for(int r = 0; r < numRepeats; r++) {
+				if(this.codes[r] != null) {
+					lastStart[r] = new long[this.codes[r].length];
+					Arrays.fill(lastStart[r], Long.MIN_VALUE / 2);
+					run[r] = new int[this.codes[r].length];
+				}
+			}
+		}
+
+		int length = sequence.length();
+		int words = PackedSequence.wordCount(length);
+		long[][] masks = new long[4][BLOCK_WORDS + this.lookahead];
+		long[] starts = new long[BLOCK_WORDS];
+		for(int first = 0; first < words; first += BLOCK_WORDS) {
+			fillMasks(sequence, first, words, length, masks);
+			int blockWords = Math.min(BLOCK_WORDS, words - first);
+
+			for(int r = 0; r < numRepeats; r++) {
+				int[] code = this.codes[r];
+				if(code == null) {
+					continue;
+				}
+				int m = code.length;
+				Arrays.fill(starts, 0, blockWords, EVEN_BITS);
+				for(int j = 0; j < m; j++) {
+					andShifted(starts, blockWords, masks[code[j]], j);
+				}
+
+				for(int w = 0; w < blockWords; w++) {
+					long found = starts[w];
+					while(found != 0) {
+						long position = (long) (first + w) * PackedSequence.BASES_PER_WORD
+								+ (Long.numberOfTrailingZeros(found) >>> 1);
+						found &= found - 1;
+						if(runs) {
+							int phase = (int) (position % m);
+							run[r][phase] = lastStart[r][phase] == position - m ? run[r][phase] + 1 : 1;
+							lastStart[r][phase] = position;
+							result[r] = Math.max(result[r], run[r][phase]);
+						} else if(position >= nextFree[r]) {
+							// Only count an occurrence if it begins after the previous one ended, like String#split
+							result[r]++;
+							nextFree[r] = position + m;
+						}
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Builds, for each base, the mask of positions holding it in the words of a block and its lookahead.
+	 * Invalid bases and positions past the end of the sequence hold no base.
+	 */
+	private void fillMasks(PackedSequence sequence, int first, int words, int length, long[][] masks) {
+		for(int k = 0; k < masks[0].length; k++) {
+			int w = first + k;
+			if(w >= words) {
+				for(long[] mask : masks) {
+					mask[k] = 0;
+				}
+				continue;
+			}
+			long valid = EVEN_BITS & ~sequence.getInvalid(w);
+			int tail = length - w * PackedSequence.BASES_PER_WORD;
+			if(tail < PackedSequence.BASES_PER_WORD) {
+				valid &= (1L << (2 * tail)) - 1;
+			}
+			long word = sequence.getWord(w);
+			for(int base = 0; base < 4; base++) {
+				// Pairs equal to the base become 00 after the XOR
+				long diff = word ^ (base * EVEN_BITS);
+				masks[base][k] = ~(diff | (diff >>> 1)) & valid;
+			}
+		}
+	}
+
+	/**
+	 * Clears each start position whose base j places later is not set in a base mask. Each call is a single
+	 * branch-free loop over the block, which the JIT can unroll and vectorize.
+	 */
+	private static void andShifted(long[] starts, int blockWords, long[] mask, int j) {
+		int offset = j / PackedSequence.BASES_PER_WORD;
+		int shift = 2 * (j % PackedSequence.BASES_PER_WORD);
+		if(shift == 0) {
+			for(int w = 0; w < blockWords; w++) {
+				starts[w] &= mask[w + offset];
+			}
+			return;
+		}
+		for(int w = 0; w < blockWords; w++) {
+			starts[w] &= (mask[w + offset] >>> shift) | (mask[w + offset + 1] << (64 - shift));
+		}
+	}
+
+}
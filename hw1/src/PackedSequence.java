@@ -0,0 +1,212 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * DNA sequence packed at 2 bits per base, 32 bases to each {@code long} word, so a sequence takes a quarter of
+ * the memory of a byte array and an eighth of that of a String, and can be compared a whole word at a time.
+ * <p>
+ * Base i is held in bits 2(i mod 32) and 2(i mod 32)+1 of word i / 32, coded as A=0, C=1, G=2 and T=3. Any other
+ * character is stored as an invalid base, which never matches anything; invalid bases are flagged in a parallel
+ * mask using the same 2-bit stride, which is only allocated if the sequence holds one.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class PackedSequence implements CharSequence {
+
+	public static final int BASES_PER_WORD = 32;
+	private static final char[] BASES = {'A', 'C', 'G', 'T'};
+	// Size of the reusable read buffer used when streaming a sequence from a channel
+	private static final int CHUNK_SIZE = 1 << 20;
+
+	private long[] words;
+	private long[] invalid;
+	private int length;
+
+	private PackedSequence(int capacity) {
+		this.words = new long[Math.max(wordCount(capacity), 1)];
+		this.invalid = null;
+		this.length = 0;
+	}
+
+	/**
+	 * Packs a sequence of characters
+	 *
+	 * @param sequence The DNA sequence, where anything but A, C, G and T is an invalid base
+	 * @return The packed sequence
+	 */
+	public static PackedSequence of(CharSequence sequence) {
+		int length = sequence.length();
+		PackedSequence packed = new PackedSequence(length);
+		for(int i = 0; i < length; i++) {
+			packed.append(sequence.charAt(i));
+		}
+		return packed;
+	}
+
+	/**
+	 * Packs a DNA sequence stored in a file, streaming it rather than loading it as characters
+	 *
+	 * @param file The path to a file containing the DNA sequence
+	 * @return The packed sequence
+	 * @throws IOException If the file cannot be read
+	 */
+	public static PackedSequence read(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			PackedSequence packed = new PackedSequence((int) Math.min(size, Integer.MAX_VALUE - 64));
+			packed.readFrom(channel);
+			return packed;
+		}
+	}
+
+	/**
+	 * Packs a DNA sequence read from a channel. Line breaks are skipped, as in {@link STRCounter#count(ReadableByteChannel)}.
+	 *
+	 * @param channel The channel supplying the DNA sequence as single-byte characters
+	 * @return The packed sequence
+	 * @throws IOException If the channel cannot be read
+	 */
+	public static PackedSequence read(ReadableByteChannel channel) throws IOException {
+		PackedSequence packed = new PackedSequence(CHUNK_SIZE);
+		packed.readFrom(channel);
+		return packed;
+	}
+
+	/**
+	 * Returns the number of words needed to hold a number of bases
+	 *
+	 * @param bases A whole number of bases
+	 * @return A whole number of words
+	 */
+	public static int wordCount(int bases) {
+		return (int) (((long) bases + BASES_PER_WORD - 1) / BASES_PER_WORD);
+	}
+
+	/**
+	 * Returns the 2-bit code of a base
+	 *
+	 * @param c A character of a DNA sequence
+	 * @return 0 to 3 for A, C, G and T, or -1 for any other character
+	 */
+	public static int code(char c) {
+		return switch(c) {
+			case 'A' -> 0;
+			case 'C' -> 1;
+			case 'G' -> 2;
+			case 'T' -> 3;
+			default -> -1;
+		};
+	}
+
+	@Override
+	public int length() {
+		return this.length;
+	}
+
+	/**
+	 * Returns a base of the sequence
+	 *
+	 * @param index The position of the base
+	 * @return A, C, G or T, or N for an invalid base
+	 */
+	@Override
+	public char charAt(int index) {
+		if(index < 0 || index >= this.length) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + this.length);
+		}
+		int word = index / BASES_PER_WORD;
+		int shift = 2 * (index % BASES_PER_WORD);
+		if((getInvalid(word) >>> shift & 1) != 0) {
+			return 'N';
+		}
+		return BASES[(int) (this.words[word] >>> shift) & 3];
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if(start < 0 || end > this.length || start > end) {
+			throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length " + this.length);
+		}
+		StringBuilder builder = new StringBuilder(end - start);
+		for(int i = start; i < end; i++) {
+			builder.append(charAt(i));
+		}
+		return builder;
+	}
+
+	@Override
+	public String toString() {
+		return subSequence(0, this.length).toString();
+	}
+
+	/**
+	 * Returns a word of packed bases. Bits beyond the end of the sequence are zero.
+	 *
+	 * @param word The index of the word, from 0 to {@code wordCount(length()) - 1}
+	 * @return 32 bases of 2 bits each, the first in the lowest bits
+	 */
+	public long getWord(int word) {
+		return this.words[word];
+	}
+
+	/**
+	 * Returns the mask of invalid bases within a word, in the same 2-bit stride as {@link #getWord(int)}.
+	 * Positions beyond the end of the sequence are not flagged.
+	 *
+	 * @param word The index of the word
+	 * @return The low bit of each base's pair is set if that base is invalid
+	 */
+	public long getInvalid(int word) {
+		return this.invalid == null || word >= this.invalid.length ? 0 : this.invalid[word];
+	}
+
+	/**
+	 * Returns whether any base of the sequence is invalid
+	 *
+	 * @return False if every base is A, C, G or T
+	 */
+	public boolean hasInvalid() {
+		return this.invalid != null;
+	}
+
+	private void append(char c) {
+		int index = this.length++;
+		int word = index / BASES_PER_WORD;
+		if(word == this.words.length) {
+			this.words = Arrays.copyOf(this.words, this.words.length * 2);
+		}
+		int shift = 2 * (index % BASES_PER_WORD);
+		int code = code(c);
+		if(code >= 0) {
+			this.words[word] |= (long) code << shift;
+			return;
+		}
+		if(this.invalid == null) {
+			this.invalid = new long[this.words.length];
+		} else if(word >= this.invalid.length) {
+			this.invalid = Arrays.copyOf(this.invalid, this.words.length);
+		}
+		this.invalid[word] |= 1L << shift;
+	}
+
+	private void readFrom(ReadableByteChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+		while(channel.read(buffer) != -1) {
+			buffer.flip();
+			while(buffer.hasRemaining()) {
+				byte b = buffer.get();
+				if(b != '\n' && b != '\r') {
+					append((char) (b & 0xFF));
+				}
+			}
+			buffer.clear();
+		}
+	}
+
+}
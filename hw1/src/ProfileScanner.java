@@ -0,0 +1,184 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Brute-force comparison of a query against every profile in the database, split into fork-join shards.
+ * Each shard scores its rows one STR column at a time over the primitive column arrays, then the shards are
+ * merged so that only the people with the most STRs in common survive.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class ProfileScanner {
+
+	// Number of rows compared by a single leaf task
+	private static final int SHARD_SIZE = 1 << 14;
+
+	private ProfileScanner() { }
+
+	/**
+	 * Finds the people sharing the greatest number of STR counts with the query by scanning every profile in parallel
+	 *
+	 * @param database The database of profiles to scan
+	 * @param repeatCounts The number of each STR found in the queried sequence
+	 * @param limit The greatest number of ids to return; the lowest ids are kept
+	 * @param stats A three-element array that receives the number of STRs the returned people have in common,
+	 *              the total number of people sharing that many, including any beyond the limit, and the number
+	 *              of people compared
+	 * @param pool The pool that runs the shards
+	 * @return The sorted ids of the people sharing the greatest number of STRs, or an empty array if none share any
+	 */
+	public static int[] closest(STRDatabase database, int[] repeatCounts, int limit, int[] stats, ForkJoinPool pool) {
+		Shard result = pool.invoke(new ScanTask(database, repeatCounts, limit, 0, database.size()));
+		stats[0] = result.best;
+		stats[1] = result.total;
+		stats[2] = database.size();
+		return result.rows.toArray();
+	}
+
+	/**
+	 * Finds the people whose counts equal the query in every STR column by scanning every profile in parallel.
+	 * Columns are compared in the given order, one at a time over a shrinking list of candidates, so a person is
+	 * no longer compared once a column rules them out.
+	 *
+	 * @param database The database of profiles to scan
+	 * @param repeatCounts The number of each STR found in the queried sequence
+	 * @param order The columns to compare, most selective first; see {@link QueryPlanner#order(int[])}
+	 * @param limit The greatest number of ids to return; the lowest ids are kept
+	 * @param stats A two-element array that receives the total number of exactly matching people, including any
+	 *              beyond the limit, and the number of column comparisons skipped by stopping early
+	 * @param pool The pool that runs the shards
+	 * @return The sorted ids of the exactly matching people, possibly empty
+	 */
+	public static int[] exact(STRDatabase database, int[] repeatCounts, int[] order, int limit, long[] stats,
+			ForkJoinPool pool) {
+		Shard result = pool.invoke(new ScanTask(database, repeatCounts, order, limit, 0, database.size()));
+		stats[0] = result.total;
+		stats[1] = result.skipped;
+		return result.rows.toArray();
+	}
+
+	/**
+	 * Best score found within a range of rows, how many rows reached it, and the first of those rows in ascending
+	 * order, up to the limit
+	 */
+	private static final class Shard {
+
+		private int best = 0;
+		private int total = 0;
+		private long skipped = 0;
+		private final STRIndex.IntList rows = new STRIndex.IntList();
+
+		/**
+		 * Combines the shard for the rows directly following this one into this shard
+		 */
+		private Shard merge(Shard next, int limit) {
+			long skipped = this.skipped + next.skipped;
+			Shard merged = this;
+			if(next.best > this.best) {
+				merged = next;
+			} else if(next.best == this.best) {
+				this.total += next.total;
+				this.rows.addAll(next.rows);
+				this.rows.truncate(limit);
+			}
+			merged.skipped = skipped;
+			return merged;
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static final class ScanTask extends RecursiveTask<Shard> {
+
+		private final STRDatabase database;
+		private final int[] repeatCounts;
+		// Column order for an exact-match scan, or null to score every column for the closest matches
+		private final int[] order;
+		private final int limit;
+		private final int from;
+		private final int to;
+
+		private ScanTask(STRDatabase database, int[] repeatCounts, int limit, int from, int to) {
+			this(database, repeatCounts, null, limit, from, to);
+		}
+
+		private ScanTask(STRDatabase database, int[] repeatCounts, int[] order, int limit, int from, int to) {
+			this.database = database;
+			this.repeatCounts = repeatCounts;
+			this.order = order;
+			this.limit = limit;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Shard compute() {
+			if(this.to - this.from <= SHARD_SIZE) {
+				return this.order == null ? scan() : scanExact();
+			}
+			int mid = (this.from + this.to) >>> 1;
+			ScanTask left = new ScanTask(this.database, this.repeatCounts, this.order, this.limit, this.from, mid);
+			ScanTask right = new ScanTask(this.database, this.repeatCounts, this.order, this.limit, mid, this.to);
+			left.fork();
+			Shard rightShard = right.compute();
+			return left.join().merge(rightShard, this.limit);
+		}
+
+		private Shard scan() {
+			int[] scores = new int[this.to - this.from];
+			for(int c = 0; c < this.repeatCounts.length; c++) {
+				this.database.getColumn(c).addMatches(this.repeatCounts[c], scores, this.from, this.to);
+			}
+
+			// Removed people keep their rows, so they are scored but never counted
+			for(int i = 0; i < scores.length; i++) {
+				if(this.database.isDeleted(this.from + i)) {
+					scores[i] = 0;
+				}
+			}
+
+			Shard shard = new Shard();
+			for(int score : scores) {
+				shard.best = Math.max(shard.best, score);
+			}
+			// People with nothing in common are never returned, so there is no need to collect them
+			for(int i = 0; i < scores.length && shard.best > 0; i++) {
+				if(scores[i] == shard.best) {
+					shard.total++;
+					if(shard.rows.size() < this.limit) {
+						shard.rows.add(this.from + i);
+					}
+				}
+			}
+			return shard;
+		}
+
+		private Shard scanExact() {
+			int[] candidates = new int[this.to - this.from];
+			for(int i = 0; i < candidates.length; i++) {
+				candidates[i] = this.from + i;
+			}
+			int size = candidates.length;
+			long compared = 0;
+			for(int c = 0; c < this.order.length && size > 0; c++) {
+				int column = this.order[c];
+				compared += size;
+				size = this.database.getColumn(column).filterEqual(this.repeatCounts[column], candidates, size);
+			}
+
+			Shard shard = new Shard();
+			shard.skipped = (long) candidates.length * this.order.length - compared;
+			for(int i = 0; i < size; i++) {
+				if(!this.database.isDeleted(candidates[i])) {
+					shard.total++;
+					if(shard.rows.size() < this.limit) {
+						shard.rows.add(candidates[i]);
+					}
+				}
+			}
+			shard.best = shard.total > 0 ? this.order.length : 0;
+			return shard;
+		}
+	}
+
+}
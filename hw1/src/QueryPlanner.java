@@ -0,0 +1,94 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chooses the order in which STR columns are compared, using a histogram of the counts in each column.
+ * A column where few people share the queried count rules most people out at once, so checking the most
+ * selective columns first lets an exact-match scan stop comparing a person at their first mismatch as early
+ * as possible.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class QueryPlanner {
+
+	// Counts below this are tallied in an array; the rare larger ones in a map
+	private static final int DENSE_LIMIT = 1 << 10;
+
+	private final STRDatabase database;
+	private final int[][] dense;
+	private final List<Map<Integer, Integer>> sparse;
+
+	public QueryPlanner(STRDatabase database) {
+		this.database = database;
+		int numRepeats = database.getRepeats().length;
+		this.dense = new int[numRepeats][DENSE_LIMIT];
+		this.sparse = new ArrayList<>();
+		for(int c = 0; c < numRepeats; c++) {
+			this.sparse.add(new HashMap<>());
+			CountColumn column = database.getColumn(c);
+			for(int row = 0; row < column.size(); row++) {
+				tally(c, column.get(row));
+			}
+		}
+	}
+
+	/**
+	 * Adds a person newly appended to the database to the histograms. Removed people are not subtracted, so the
+	 * histograms only drift slightly as people are removed, which does not matter for ordering columns.
+	 *
+	 * @param row The row id of the new person
+	 */
+	public void add(int row) {
+		for(int c = 0; c < this.dense.length; c++) {
+			tally(c, this.database.getColumn(c).get(row));
+		}
+	}
+
+	/**
+	 * Returns how many people hold a count in a column
+	 *
+	 * @param column The STR column
+	 * @param count The count to look up
+	 * @return A whole number of people
+	 */
+	public int frequency(int column, int count) {
+		if(count >= 0 && count < DENSE_LIMIT) {
+			return this.dense[column][count];
+		}
+		return this.sparse.get(column).getOrDefault(count, 0);
+	}
+
+	/**
+	 * Orders the STR columns for comparing against a query, most selective first
+	 *
+	 * @param repeatCounts The number of each STR found in the queried sequence
+	 * @return Every column index, sorted by how many people share the queried count in that column
+	 */
+	public int[] order(int[] repeatCounts) {
+		int numRepeats = this.dense.length;
+		// Sort frequency and column together as one long, so no boxing is needed
+		long[] keys = new long[numRepeats];
+		for(int c = 0; c < numRepeats; c++) {
+			keys[c] = (long) frequency(c, repeatCounts[c]) << 32 | c;
+		}
+		Arrays.sort(keys);
+		int[] order = new int[numRepeats];
+		for(int i = 0; i < numRepeats; i++) {
+			order[i] = (int) keys[i];
+		}
+		return order;
+	}
+
+	private void tally(int column, int count) {
+		if(count >= 0 && count < DENSE_LIMIT) {
+			this.dense[column][count]++;
+		} else {
+			this.sparse.get(column).merge(count, 1, Integer::sum);
+		}
+	}
+
+}
@@ -0,0 +1,283 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Multi-pattern counter for STR sequences, built as an Aho-Corasick automaton over every STR at once.
+ * A single linear pass over a DNA sequence yields, for each STR, either the count of its non-overlapping
+ * occurrences or the length of its longest tandem run, without allocating anything per character of the sequence.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class STRCounter {
+
+	private static final int ROOT = 0;
+	// Size of the reusable read buffer used when streaming a sequence from a channel
+	private static final int CHUNK_SIZE = 1 << 20;
+
+	private final String[] repeats;
+	private final CountMode mode;
+	// Maps an ASCII character to its index in the automaton alphabet, or -1 if no STR uses it
+	private final int[] alphabet;
+	// Goto function, completed with failure transitions: next state = transitions[state * alphabetSize + symbol]
+	private final int[] transitions;
+	private final int alphabetSize;
+	// STR indices recognized on entering each state, including those inherited through failure links
+	private final int[][] outputs;
+
+	public STRCounter(String[] repeats) {
+		this(repeats, CountMode.OCCURRENCES);
+	}
+
+	public STRCounter(String[] repeats, CountMode mode) {
+		this.repeats = repeats;
+		this.mode = mode;
+
+		this.alphabet = new int[128];
+		Arrays.fill(this.alphabet, -1);
+		int symbols = 0;
+		for(String repeat : repeats) {
+			for(char c : repeat.toCharArray()) {
+				if(c < 128 && this.alphabet[c] == -1) {
+					this.alphabet[c] = symbols++;
+				}
+			}
+		}
+		this.alphabetSize = Math.max(symbols, 1);
+
+		// Build the trie of all STRs
+		List<int[]> trie = new ArrayList<>();
+		List<List<Integer>> terminals = new ArrayList<>();
+		trie.add(newNode());
+		terminals.add(new ArrayList<>());
+		for(int r = 0; r < repeats.length; r++) {
+			String repeat = repeats[r];
+			if(repeat.isEmpty()) {
+				continue;
+			}
+			int state = ROOT;
+			boolean representable = true;
+			for(char c : repeat.toCharArray()) {
+				if(c >= 128) {
+					// Cannot occur in the alphabet we index, so it can never match
+					representable = false;
+					break;
+				}
+				int symbol = this.alphabet[c];
+				if(trie.get(state)[symbol] == -1) {
+					trie.get(state)[symbol] = trie.size();
+					trie.add(newNode());
+					terminals.add(new ArrayList<>());
+				}
+				state = trie.get(state)[symbol];
+			}
+			if(representable) {
+				terminals.get(state).add(r);
+			}
+		}
+
+		// Breadth-first pass to compute failure links and complete the transition table
+		int states = trie.size();
+		this.transitions = new int[states * this.alphabetSize];
+		this.outputs = new int[states][];
+		int[] failure = new int[states];
+		Queue<Integer> queue = new ArrayDeque<>();
+
+		this.outputs[ROOT] = toArray(terminals.get(ROOT));
+		for(int s = 0; s < this.alphabetSize; s++) {
+			int child = trie.get(ROOT)[s];
+			if(child == -1) {
+				this.transitions[s] = ROOT;
+			} else {
+				this.transitions[s] = child;
+				failure[child] = ROOT;
+				queue.add(child);
+			}
+		}
+		while(!queue.isEmpty()) {
+			int state = queue.poll();
+			// Outputs of a state are its own terminals plus everything recognized at its failure state
+			List<Integer> out = new ArrayList<>(terminals.get(state));
+			for(int r : this.outputs[failure[state]]) {
+				out.add(r);
+			}
+			this.outputs[state] = toArray(out);
+
+			for(int s = 0; s < this.alphabetSize; s++) {
+				int child = trie.get(state)[s];
+				int fallback = this.transitions[failure[state] * this.alphabetSize + s];
+				if(child == -1) {
+					this.transitions[state * this.alphabetSize + s] = fallback;
+				} else {
+					this.transitions[state * this.alphabetSize + s] = child;
+					failure[child] = fallback;
+					queue.add(child);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Counts every STR within a DNA sequence in a single pass, according to the counter's mode
+	 *
+	 * @param sequence The DNA sequence to be searched for STRs
+	 * @return The count for each STR, in the same order as the STRs given to this counter
+	 */
+	public int[] count(CharSequence sequence) {
+		Scan scan = new Scan();
+		int length = sequence.length();
+		for(int i = 0; i < length; i++) {
+			scan.accept(sequence.charAt(i));
+		}
+		return scan.counts;
+	}
+
+	/**
+	 * Counts every STR within a DNA sequence file, according to the counter's mode.
+	 * The file is streamed in fixed-size chunks, so memory use does not depend on the size of the sequence.
+	 *
+	 * @param file The path to a file containing the DNA sequence
+	 * @return The count for each STR, in the same order as the STRs given to this counter
+	 * @throws IOException If the file cannot be read
+	 */
+	public int[] count(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return count(channel);
+		}
+	}
+
+	/**
+	 * Counts every STR within a DNA sequence read from a channel, according to the counter's mode.
+	 * The automaton state is carried between chunks, so occurrences spanning a chunk boundary are still counted.
+	 * Line breaks are skipped, so a sequence wrapped over several lines counts the same as a single line.
+	 *
+	 * @param channel The channel supplying the DNA sequence as single-byte characters
+	 * @return The count for each STR, in the same order as the STRs given to this counter
+	 * @throws IOException If the channel cannot be read
+	 */
+	public int[] count(ReadableByteChannel channel) throws IOException {
+		Scan scan = new Scan();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+		while(channel.read(buffer) != -1) {
+			buffer.flip();
+			while(buffer.hasRemaining()) {
+				byte b = buffer.get();
+				if(b != '\n' && b != '\r') {
+					scan.accept((char) (b & 0xFF));
+				}
+			}
+			buffer.clear();
+		}
+		return scan.counts;
+	}
+
+	/**
+	 * Returns the STR sequences recognized by this counter
+	 *
+	 * @return A string array containing each STR sequence
+	 */
+	public String[] getRepeats() {
+		return this.repeats;
+	}
+
+	/**
+	 * Returns what this counter reports for each STR
+	 *
+	 * @return The counting mode
+	 */
+	public CountMode getMode() {
+		return this.mode;
+	}
+
+	/**
+	 * What is counted for each STR
+	 */
+	public enum CountMode {
+		/** The number of non-overlapping occurrences anywhere in the sequence */
+		OCCURRENCES,
+		/** The greatest number of times the STR is repeated back to back, as recorded in profile databases */
+		LONGEST_RUN
+	}
+
+	/**
+	 * State of a single pass of the automaton over a sequence, which may be fed in pieces
+	 */
+	private final class Scan {
+
+		private final int[] counts = new int[repeats.length];
+		// Position of the last character of the most recently counted occurrence of each STR
+		private final long[] lastEnd = new long[repeats.length];
+		// In longest-run mode, for each STR and each end position modulo its length, the last end seen and the
+		// length of the run finishing there; a ring of one entry per phase, since runs of an STR can interleave
+		private final long[][] runEnd;
+		private final int[][] runLength;
+		private int state = ROOT;
+		private long position = 0;
+
+		private Scan() {
+			Arrays.fill(this.lastEnd, -1);
+			if(mode == CountMode.LONGEST_RUN) {
+				this.runEnd = new long[repeats.length][];
+				this.runLength = new int[repeats.length][];
+				for(int r = 0; r < repeats.length; r++) {
+					this.runEnd[r] = new long[Math.max(repeats[r].length(), 1)];
+					Arrays.fill(this.runEnd[r], Long.MIN_VALUE / 2);
+					this.runLength[r] = new int[this.runEnd[r].length];
+				}
+			} else {
+				this.runEnd = null;
+				this.runLength = null;
+			}
+		}
+
+		/**
+		 * Advances the automaton by one character of the sequence
+		 *
+		 * @param c The next character of the sequence
+		 */
+		private void accept(char c) {
+			long i = this.position++;
+			int symbol = c < 128 ? alphabet[c] : -1;
+			if(symbol == -1) {
+				this.state = ROOT;
+				return;
+			}
+			this.state = transitions[this.state * alphabetSize + symbol];
+			for(int r : outputs[this.state]) {
+				int length = repeats[r].length();
+				if(this.runEnd != null) {
+					// Extend the run if the previous copy ended exactly one STR length ago
+					int phase = (int) (i % length);
+					int run = this.runEnd[r][phase] == i - length ? this.runLength[r][phase] + 1 : 1;
+					this.runEnd[r][phase] = i;
+					this.runLength[r][phase] = run;
+					this.counts[r] = Math.max(this.counts[r], run);
+				} else if(i - length >= this.lastEnd[r]) {
+					// Only count an occurrence if it begins after the previous one ended, like String#split
+					this.counts[r]++;
+					this.lastEnd[r] = i;
+				}
+			}
+		}
+	}
+
+	private int[] newNode() {
+		int[] node = new int[this.alphabetSize];
+		Arrays.fill(node, -1);
+		return node;
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		return list.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+}
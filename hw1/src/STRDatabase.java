@@ -0,0 +1,239 @@
+import java.util.BitSet;
+
+/**
+ * Columnar store of STR profiles: one primitive count column per STR and a separate table of names.
+ * Person objects are only created on request, for the rows a query actually returns.
+ * <p>
+ * People may be appended, and removed by marking their row deleted; row ids are never reused, so any index
+ * built over the rows stays valid and only has to learn about new rows and skip deleted ones.
+ * The database is not thread-safe on its own; DNAMatcher guards it while it changes.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class STRDatabase {
+
+	private final String[] repeats;
+	private final CountColumn[] columns;
+	private final NameTable names;
+	private final BitSet deleted = new BitSet();
+
+	public STRDatabase(String[] repeats, CountColumn[] columns, NameTable names) {
+		this.repeats = repeats;
+		this.columns = columns;
+		this.names = names;
+	}
+
+	/**
+	 * Builds a columnar database from an array of people
+	 *
+	 * @param repeats The STR sequences, in column order
+	 * @param people The people whose STR counts fill the columns
+	 * @return A database holding the same profiles
+	 */
+	public static STRDatabase of(String[] repeats, Person[] people) {
+		CountColumn[] columns = new CountColumn[repeats.length];
+		int[] values = new int[people.length];
+		for(int c = 0; c < repeats.length; c++) {
+			for(int row = 0; row < people.length; row++) {
+				values[row] = people[row].getDnaRepeats()[c];
+			}
+			columns[c] = CountColumn.of(values);
+		}
+		String[] names = new String[people.length];
+		for(int row = 0; row < people.length; row++) {
+			names[row] = people[row].getName();
+		}
+		return new STRDatabase(repeats, columns, new NameTable(names));
+	}
+
+	/**
+	 * Returns the different sequences of STRs held by the database
+	 *
+	 * @return A string array containing each STR sequence
+	 */
+	public String[] getRepeats() {
+		return this.repeats;
+	}
+
+	/**
+	 * Returns the count column for a particular STR
+	 *
+	 * @param column The index of the STR
+	 * @return The column of counts for that STR, one per person
+	 */
+	public CountColumn getColumn(int column) {
+		return this.columns[column];
+	}
+
+	/**
+	 * Returns the number of rows in the database, including the rows of people who have been removed.
+	 * Row ids range from 0 up to (but excluding) this size.
+	 *
+	 * @return A whole number of rows
+	 */
+	public int size() {
+		return this.names.size();
+	}
+
+	/**
+	 * Returns the number of people in the database who have not been removed
+	 *
+	 * @return A whole number of people
+	 */
+	public int liveSize() {
+		return size() - this.deleted.cardinality();
+	}
+
+	/**
+	 * Returns whether a row belongs to a person who has been removed
+	 *
+	 * @param row The id of the person
+	 * @return true if the row has been deleted
+	 */
+	public boolean isDeleted(int row) {
+		return this.deleted.get(row);
+	}
+
+	/**
+	 * Adds a person to the end of the database
+	 *
+	 * @param name The name of the person
+	 * @param dnaRepeats The person's count for each STR, in column order
+	 * @return The row id of the new person
+	 */
+	public int append(String name, int[] dnaRepeats) {
+		if(dnaRepeats.length != this.columns.length) {
+			throw new IllegalArgumentException("Expected " + this.columns.length + " STR counts but got " + dnaRepeats.length);
+		}
+		int row = size();
+		for(int c = 0; c < this.columns.length; c++) {
+			this.columns[c] = this.columns[c].append(dnaRepeats[c]);
+		}
+		this.names.append(name);
+		return row;
+	}
+
+	/**
+	 * Removes a person by marking their row deleted. The row id is never reused.
+	 *
+	 * @param row The id of the person
+	 */
+	public void delete(int row) {
+		this.deleted.set(row);
+	}
+
+	/**
+	 * Finds the rows of every person in the database with a given name who has not been removed
+	 *
+	 * @param name The name to look for
+	 * @return The ids of the matching rows in ascending order, possibly empty
+	 */
+	public int[] find(String name) {
+		STRIndex.IntList live = new STRIndex.IntList();
+		for(int row : this.names.find(name)) {
+			if(!isDeleted(row)) {
+				live.add(row);
+			}
+		}
+		return live.toArray();
+	}
+
+	/**
+	 * Copies the people who have not been removed into a new database with consecutive row ids
+	 *
+	 * @return A database holding only the remaining people
+	 */
+	public STRDatabase compact() {
+		int live = liveSize();
+		CountColumn[] copies = new CountColumn[this.columns.length];
+		int[] values = new int[live];
+		for(int c = 0; c < this.columns.length; c++) {
+			int i = 0;
+			for(int row = 0; row < size(); row++) {
+				if(!isDeleted(row)) {
+					values[i++] = this.columns[c].get(row);
+				}
+			}
+			copies[c] = CountColumn.of(values);
+		}
+		String[] remaining = new String[live];
+		int i = 0;
+		for(int row = 0; row < size(); row++) {
+			if(!isDeleted(row)) {
+				remaining[i++] = this.names.get(row);
+			}
+		}
+		return new STRDatabase(this.repeats, copies, new NameTable(remaining));
+	}
+
+	/**
+	 * Copies the people who have not been removed into a database held in direct buffers outside the Java heap, so
+	 * heap use no longer grows with the number of people and full collections do not trace the profiles. Direct
+	 * memory is capped by {@code -XX:MaxDirectMemorySize}; databases larger than that are better kept in a
+	 * memory-mapped .strdb file, which is already off the heap. People appended to an off-heap database are kept
+	 * on the heap until it is next copied, which folds them into the direct buffers.
+	 *
+	 * @return A database whose columns and names live off the heap, which is this database if they already do
+	 */
+	public STRDatabase toOffHeap() {
+		CountColumn[] copies = new CountColumn[this.columns.length];
+		boolean copied = false;
+		for(int c = 0; c < copies.length; c++) {
+			copies[c] = this.columns[c].toOffHeap(this.deleted);
+			copied |= copies[c] != this.columns[c];
+		}
+		NameTable names = this.names.toOffHeap(this.deleted);
+		if(!copied && names == this.names) {
+			return this;
+		}
+		return new STRDatabase(this.repeats, copies, names);
+	}
+
+	/**
+	 * Returns whether the names and counts are held outside the Java heap, in direct buffers or a mapped file
+	 *
+	 * @return true if the database was copied off the heap or read from a .strdb file
+	 */
+	public boolean isOffHeap() {
+		return this.names.isOffHeap();
+	}
+
+	/**
+	 * Returns the name of a person
+	 *
+	 * @param row The id of the person
+	 * @return A String corresponding to the name of the person
+	 */
+	public String getName(int row) {
+		return this.names.get(row);
+	}
+
+	/**
+	 * Creates a Person object for a single row of the database
+	 *
+	 * @param row The id of the person
+	 * @return A Person with the row's name and STR counts
+	 */
+	public Person getPerson(int row) {
+		int[] dnaRepeats = new int[this.columns.length];
+		for(int c = 0; c < this.columns.length; c++) {
+			dnaRepeats[c] = this.columns[c].get(row);
+		}
+		return new Person(this.names.get(row), dnaRepeats);
+	}
+
+	/**
+	 * Creates Person objects for a set of rows of the database
+	 *
+	 * @param rows The ids of the people
+	 * @return A Person for each row, in the same order
+	 */
+	public Person[] getPeople(int... rows) {
+		Person[] people = new Person[rows.length];
+		for(int i = 0; i < rows.length; i++) {
+			people[i] = getPerson(rows[i]);
+		}
+		return people;
+	}
+}
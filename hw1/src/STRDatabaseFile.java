@@ -0,0 +1,262 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reader and writer for the compact binary .strdb database format.
+ * <p>
+ * A .strdb file holds a fixed header, a dictionary of STR columns, each column's counts packed at the width
+ * it needs, and a blob of UTF-8 names with their offsets. All values are little-endian and every section
+ * starts on an 8-byte boundary. Reading maps the sections straight into memory, so loading takes roughly
+ * the same time regardless of how many people the database holds.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class STRDatabaseFile {
+
+	private static final byte[] MAGIC = "STRDB\0\0\0".getBytes(StandardCharsets.US_ASCII);
+	private static final int VERSION = 1;
+	// magic, version, rows, columns, padding, then four longs locating the dictionary end and name sections
+	private static final int HEADER_SIZE = 8 + 4 * 4 + 4 * 8;
+	private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+	private STRDatabaseFile() { }
+
+	/**
+	 * Converts a CSV database into the binary .strdb format
+	 *
+	 * @param args The path to the CSV database followed by the path of the .strdb file to create
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length != 2) {
+			System.out.println("Usage: java STRDatabaseFile <input.csv> <output.strdb>");
+			return;
+		}
+		long start = System.nanoTime();
+		STRDatabase database = new DNAFileParser(args[0]).getDatabase();
+		write(database, Path.of(args[1]));
+		System.out.printf("Converted %d people with %d STRs in %d ms%n", database.size(),
+				database.getRepeats().length, (System.nanoTime() - start) / 1_000_000);
+	}
+
+	/**
+	 * Memory-maps a .strdb file as a database. Counts and names are read from the mapping on demand.
+	 *
+	 * @param file The path to the .strdb file
+	 * @return A database backed by the mapped file
+	 * @throws IOException If the file cannot be read or is not a valid .strdb file
+	 */
+	public static STRDatabase read(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while(header.hasRemaining() && channel.read(header) != -1) {
+				// keep reading until the header is complete or the file ends
+			}
+			header.flip();
+			byte[] magic = new byte[MAGIC.length];
+			if(header.remaining() < HEADER_SIZE) {
+				throw new IOException(file + " is not a .strdb database");
+			}
+			header.get(magic);
+			if(!Arrays.equals(magic, MAGIC)) {
+				throw new IOException(file + " is not a .strdb database");
+			}
+			int version = header.getInt();
+			if(version != VERSION) {
+				throw new IOException("Unsupported .strdb version " + version + " in " + file);
+			}
+			int rows = header.getInt();
+			int columns = header.getInt();
+			header.getInt();
+			long dataStart = header.getLong();
+			long nameOffsetsPos = header.getLong();
+			long nameBytesPos = header.getLong();
+			long nameBytesLength = header.getLong();
+
+			// Column dictionary: data offset, width and STR for each column
+			ByteBuffer dictionary = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, dataStart - HEADER_SIZE)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			String[] repeats = new String[columns];
+			CountColumn[] counts = new CountColumn[columns];
+			for(int c = 0; c < columns; c++) {
+				long dataOffset = dictionary.getLong();
+				int width = dictionary.getInt();
+				byte[] name = new byte[dictionary.getInt()];
+				dictionary.get(name);
+				repeats[c] = new String(name, StandardCharsets.UTF_8);
+				MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset, (long) rows * width);
+				counts[c] = CountColumn.wrap(data, width, rows);
+			}
+
+			MappedByteBuffer nameOffsets = channel.map(FileChannel.MapMode.READ_ONLY, nameOffsetsPos, (rows + 1L) * 4);
+			MappedByteBuffer nameBytes = channel.map(FileChannel.MapMode.READ_ONLY, nameBytesPos, nameBytesLength);
+			return new STRDatabase(repeats, counts, new NameTable(nameBytes, nameOffsets));
+		}
+	}
+
+	/**
+	 * Writes a database in the binary .strdb format, replacing the file if it exists. People who have been removed
+	 * are left out, as in CSV files.
+	 *
+	 * @param database The database to be written
+	 * @param file The path of the .strdb file to create
+	 * @throws IOException If the file cannot be written
+	 */
+	public static void write(STRDatabase database, Path file) throws IOException {
+		String[] repeats = database.getRepeats();
+		int rows = database.liveSize();
+		int columns = repeats.length;
+
+		// Lay out the sections before writing, so the header and dictionary can point at them
+		byte[][] repeatNames = new byte[columns][];
+		long dictionaryEnd = HEADER_SIZE;
+		for(int c = 0; c < columns; c++) {
+			repeatNames[c] = repeats[c].getBytes(StandardCharsets.UTF_8);
+			dictionaryEnd += 8 + 4 + 4 + repeatNames[c].length;
+		}
+		long dataStart = align(dictionaryEnd);
+		long[] dataOffsets = new long[columns];
+		long position = dataStart;
+		for(int c = 0; c < columns; c++) {
+			dataOffsets[c] = position;
+			position = align(position + (long) rows * database.getColumn(c).width());
+		}
+		long nameOffsetsPos = position;
+		long nameBytesPos = align(nameOffsetsPos + (rows + 1L) * 4);
+
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			Output out = new Output(channel);
+			out.bytes(MAGIC);
+			out.putInt(VERSION);
+			out.putInt(rows);
+			out.putInt(columns);
+			out.putInt(0);
+			out.putLong(dataStart);
+			out.putLong(nameOffsetsPos);
+			out.putLong(nameBytesPos);
+			// The length of the name blob is only known once it is written; patched below
+			out.putLong(0);
+
+			for(int c = 0; c < columns; c++) {
+				CountColumn column = database.getColumn(c);
+				out.putLong(dataOffsets[c]);
+				out.putInt(column.width());
+				out.putInt(repeatNames[c].length);
+				out.bytes(repeatNames[c]);
+			}
+			out.padTo(dataStart);
+
+			for(int c = 0; c < columns; c++) {
+				CountColumn column = database.getColumn(c);
+				out.padTo(dataOffsets[c]);
+				for(int row = 0; row < database.size(); row++) {
+					if(database.isDeleted(row)) {
+						continue;
+					}
+					switch(column.width()) {
+						case 1 -> out.putByte((byte) column.get(row));
+						case 2 -> out.putShort((short) column.get(row));
+						default -> out.putInt(column.get(row));
+					}
+				}
+			}
+
+			out.padTo(nameOffsetsPos);
+			int offset = 0;
+			out.putInt(0);
+			for(int row = 0; row < database.size(); row++) {
+				if(!database.isDeleted(row)) {
+					offset += database.getName(row).getBytes(StandardCharsets.UTF_8).length;
+					out.putInt(offset);
+				}
+			}
+			out.padTo(nameBytesPos);
+			for(int row = 0; row < database.size(); row++) {
+				if(!database.isDeleted(row)) {
+					out.bytes(database.getName(row).getBytes(StandardCharsets.UTF_8));
+				}
+			}
+			out.flush();
+
+			ByteBuffer length = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(offset).flip();
+			channel.write(length, HEADER_SIZE - 8);
+		}
+	}
+
+	private static long align(long position) {
+		return (position + 7) & ~7L;
+	}
+
+	/**
+	 * Buffered little-endian writer that tracks its position in the file
+	 */
+	private static final class Output {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		private long position = 0;
+
+		private Output(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		private void ensure(int bytes) throws IOException {
+			if(this.buffer.remaining() < bytes) {
+				flush();
+			}
+		}
+
+		private void putByte(byte value) throws IOException {
+			ensure(1);
+			this.buffer.put(value);
+			this.position += 1;
+		}
+
+		private void putShort(short value) throws IOException {
+			ensure(2);
+			this.buffer.putShort(value);
+			this.position += 2;
+		}
+
+		private void putInt(int value) throws IOException {
+			ensure(4);
+			this.buffer.putInt(value);
+			this.position += 4;
+		}
+
+		private void putLong(long value) throws IOException {
+			ensure(8);
+			this.buffer.putLong(value);
+			this.position += 8;
+		}
+
+		private void bytes(byte[] value) throws IOException {
+			for(byte b : value) {
+				putByte(b);
+			}
+		}
+
+		private void padTo(long target) throws IOException {
+			while(this.position < target) {
+				putByte((byte) 0);
+			}
+		}
+
+		private void flush() throws IOException {
+			this.buffer.flip();
+			while(this.buffer.hasRemaining()) {
+				this.channel.write(this.buffer);
+			}
+			this.buffer.clear();
+		}
+	}
+
+}
@@ -0,0 +1,216 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index from (STR column, count) to the people holding that count.
+ * Each posting list is a sorted array of person ids, so close matches are found by merging the lists for the
+ * queried counts, touching only people who share at least one STR count with the query. Exact matches are
+ * answered by {@link ExactProfileIndex} instead.
+ * People appended to the database are added to the end of their lists; removed people are skipped.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class STRIndex {
+
+	private final STRDatabase database;
+	private final int numRepeats;
+	private final List<Map<Integer, IntList>> postings;
+
+	public STRIndex(STRDatabase database) {
+		this.database = database;
+		this.numRepeats = database.getRepeats().length;
+
+		// Gather ids per count; ids are visited in ascending order so each list comes out sorted
+		this.postings = new ArrayList<>();
+		for(int c = 0; c < this.numRepeats; c++) {
+			Map<Integer, IntList> lists = new HashMap<>();
+			CountColumn column = database.getColumn(c);
+			for(int id = 0; id < column.size(); id++) {
+				lists.computeIfAbsent(column.get(id), k -> new IntList()).add(id);
+			}
+			for(IntList list : lists.values()) {
+				list.trim();
+			}
+			this.postings.add(lists);
+		}
+	}
+
+	/**
+	 * Adds a person newly appended to the database. Their id is the largest so far, so every list stays sorted.
+	 *
+	 * @param id The row id of the new person
+	 */
+	public void add(int id) {
+		for(int c = 0; c < this.numRepeats; c++) {
+			this.postings.get(c).computeIfAbsent(this.database.getColumn(c).get(id), k -> new IntList()).add(id);
+		}
+	}
+
+	/**
+	 * Finds the people sharing the greatest number of STR counts with the query, by merging the posting lists
+	 * for each queried count and tallying how many lists each person appears in
+	 *
+	 * @param repeatCounts The number of each STR found in the queried sequence
+	 * @param limit The greatest number of ids to return; the lowest ids are kept
+	 * @param stats A three-element array that receives the number of STRs the returned people have in common,
+	 *              the total number of people sharing that many, including any beyond the limit, and the number
+	 *              of people compared
+	 * @return The sorted ids of the people sharing the greatest number of STRs, or an empty array if none share any
+	 */
+	public int[] closest(int[] repeatCounts, int limit, int[] stats) {
+		IntList[] lists = lookup(repeatCounts);
+		int k = lists.length;
+		int[] cursor = new int[k];
+
+		// Min-heap of list indices, ordered by the id each list's cursor points at
+		int[] heap = new int[k];
+		int size = 0;
+		for(int i = 0; i < k; i++) {
+			heap[size++] = i;
+			siftUp(heap, size - 1, lists, cursor);
+		}
+
+		IntList matches = new IntList();
+		int bestVotes = 0;
+		int total = 0;
+		int compared = 0;
+		while(size > 0) {
+			int id = head(heap[0], lists, cursor);
+			int votes = 0;
+			compared++;
+			// Pop every list currently positioned at this id
+			while(size > 0 && head(heap[0], lists, cursor) == id) {
+				votes++;
+				int top = heap[0];
+				if(++cursor[top] == lists[top].size) {
+					heap[0] = heap[--size];
+				}
+				siftDown(heap, size, lists, cursor);
+			}
+			if(this.database.isDeleted(id)) {
+				continue;
+			}
+			if(votes > bestVotes) {
+				bestVotes = votes;
+				matches.clear();
+				total = 0;
+			}
+			// Ids arrive in ascending order, so once the limit is reached later ids are only counted
+			if(votes == bestVotes) {
+				total++;
+				if(matches.size() < limit) {
+					matches.add(id);
+				}
+			}
+		}
+		stats[0] = bestVotes;
+		stats[1] = total;
+		stats[2] = compared;
+		return matches.toArray();
+	}
+
+	/**
+	 * Collects the non-empty posting lists for each queried count
+	 */
+	private IntList[] lookup(int[] repeatCounts) {
+		IntList[] lists = new IntList[this.numRepeats];
+		int found = 0;
+		for(int c = 0; c < this.numRepeats; c++) {
+			IntList list = this.postings.get(c).get(repeatCounts[c]);
+			if(list != null && list.size > 0) {
+				lists[found++] = list;
+			}
+		}
+		return Arrays.copyOf(lists, found);
+	}
+
+	private static void siftUp(int[] heap, int i, IntList[] lists, int[] cursor) {
+		while(i > 0) {
+			int parent = (i - 1) / 2;
+			if(head(heap[parent], lists, cursor) <= head(heap[i], lists, cursor)) {
+				return;
+			}
+			swap(heap, i, parent);
+			i = parent;
+		}
+	}
+
+	private static void siftDown(int[] heap, int size, IntList[] lists, int[] cursor) {
+		int i = 0;
+		while(true) {
+			int smallest = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+			if(left < size && head(heap[left], lists, cursor) < head(heap[smallest], lists, cursor)) {
+				smallest = left;
+			}
+			if(right < size && head(heap[right], lists, cursor) < head(heap[smallest], lists, cursor)) {
+				smallest = right;
+			}
+			if(smallest == i) {
+				return;
+			}
+			swap(heap, i, smallest);
+			i = smallest;
+		}
+	}
+
+	private static int head(int list, IntList[] lists, int[] cursor) {
+		return lists[list].data[cursor[list]];
+	}
+
+	private static void swap(int[] heap, int i, int j) {
+		int t = heap[i];
+		heap[i] = heap[j];
+		heap[j] = t;
+	}
+
+	/**
+	 * Growable list of primitive ints, to avoid boxing every id
+	 */
+	static class IntList {
+
+		private int[] data = new int[4];
+		private int size = 0;
+
+		void add(int value) {
+			if(this.size == this.data.length) {
+				this.data = Arrays.copyOf(this.data, Math.max(this.size * 2, 4));
+			}
+			this.data[this.size++] = value;
+		}
+
+		void addAll(IntList other) {
+			if(this.size + other.size > this.data.length) {
+				this.data = Arrays.copyOf(this.data, Math.max(this.data.length * 2, this.size + other.size));
+			}
+			System.arraycopy(other.data, 0, this.data, this.size, other.size);
+			this.size += other.size;
+		}
+
+		void trim() {
+			this.data = Arrays.copyOf(this.data, this.size);
+		}
+
+		void truncate(int size) {
+			this.size = Math.min(this.size, size);
+		}
+
+		void clear() {
+			this.size = 0;
+		}
+
+		int size() {
+			return this.size;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(this.data, this.size);
+		}
+	}
+
+}
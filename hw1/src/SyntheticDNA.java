@@ -0,0 +1,137 @@
+import java.util.Random;
+
+/**
+ * Seeded generator of synthetic STR databases and DNA sequences, so performance can be measured on data of any
+ * size and every run with the same seed sees exactly the same data.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class SyntheticDNA {
+
+	private static final char[] BASES = {'A', 'C', 'G', 'T'};
+	// Counts are drawn from 0 up to this bound, as in real STR databases where most counts are small
+	private static final int MAX_COUNT = 50;
+
+	private final Random random;
+
+	public SyntheticDNA(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Generates distinct STRs of four or five bases each
+	 *
+	 * @param count The number of STRs to generate
+	 * @return The STRs
+	 */
+	public String[] repeats(int count) {
+		String[] repeats = new String[count];
+		for(int i = 0; i < count; i++) {
+			String repeat;
+			do {
+				repeat = bases(4 + this.random.nextInt(2));
+			} while(contains(repeats, i, repeat));
+			repeats[i] = repeat;
+		}
+		return repeats;
+	}
+
+	/**
+	 * Generates a database of people with random counts for each STR
+	 *
+	 * @param repeats The STR columns of the database
+	 * @param people The number of people to generate
+	 * @return A database of people named {@code Person0}, {@code Person1} and so on
+	 */
+	public STRDatabase database(String[] repeats, int people) {
+		CountColumn[] columns = new CountColumn[repeats.length];
+		int[] values = new int[people];
+		for(int c = 0; c < repeats.length; c++) {
+			for(int row = 0; row < people; row++) {
+				// Squaring skews the counts towards zero
+				double u = this.random.nextDouble();
+				values[row] = (int) (u * u * MAX_COUNT);
+			}
+			columns[c] = CountColumn.of(values);
+		}
+		String[] names = new String[people];
+		for(int row = 0; row < people; row++) {
+			names[row] = "Person" + row;
+		}
+		return new STRDatabase(repeats, columns, new NameTable(names));
+	}
+
+	/**
+	 * Generates a DNA sequence holding a run of each STR repeated a given number of times, separated and padded by
+	 * random bases. The random bases may happen to contain further copies of an STR, so the counted profile can
+	 * differ slightly from the one requested.
+	 *
+	 * @param repeats The STRs to place in the sequence
+	 * @param counts The number of times to repeat each STR
+	 * @param length The length of the sequence; it is longer if the runs alone do not fit
+	 * @return The sequence
+	 */
+	public String sequence(String[] repeats, int[] counts, int length) {
+		int runs = 0;
+		for(int i = 0; i < repeats.length; i++) {
+			runs += repeats[i].length() * counts[i];
+		}
+		int gap = Math.max(length - runs, 0) / (repeats.length + 1);
+
+		StringBuilder sequence = new StringBuilder(Math.max(length, runs));
+		for(int i = 0; i < repeats.length; i++) {
+			sequence.append(bases(gap));
+			for(int n = 0; n < counts[i]; n++) {
+				sequence.append(repeats[i]);
+			}
+		}
+		sequence.append(bases(Math.max(length - sequence.length(), 0)));
+		return sequence.toString();
+	}
+
+	/**
+	 * Generates a DNA sequence for the profile of a person in a database
+	 *
+	 * @param database The database holding the person
+	 * @param row The id of the person
+	 * @param length The length of the sequence
+	 * @return A sequence whose counts mostly match the person's profile
+	 */
+	public String sequence(STRDatabase database, int row, int length) {
+		String[] repeats = database.getRepeats();
+		int[] counts = new int[repeats.length];
+		for(int c = 0; c < repeats.length; c++) {
+			counts[c] = database.getColumn(c).get(row);
+		}
+		return sequence(repeats, counts, length);
+	}
+
+	/**
+	 * Picks a random row of a database
+	 *
+	 * @param database The database to pick from
+	 * @return A row id
+	 */
+	public int row(STRDatabase database) {
+		return this.random.nextInt(database.size());
+	}
+
+	private String bases(int length) {
+		char[] bases = new char[length];
+		for(int i = 0; i < length; i++) {
+			bases[i] = BASES[this.random.nextInt(BASES.length)];
+		}
+		return new String(bases);
+	}
+
+	private static boolean contains(String[] values, int count, String value) {
+		for(int i = 0; i < count; i++) {
+			if(values[i].equals(value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,301 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Vantage-point tree over the STR profiles of a database, for finding the people nearest to a query
+ * by (optionally weighted) L1 distance between count vectors without comparing against every profile.
+ * The tree covers the rows present when it was built; removed people are skipped and people appended since
+ * are compared directly.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class VPTree {
+
+	private static final int NONE = -1;
+	// Relative tolerance on pruning, so rounding in weighted distances never discards a tied neighbour
+	private static final double EPSILON = 1e-9;
+
+	private final STRDatabase database;
+	private final double[] weights;
+	// Tree nodes, one per row: the vantage row, the median distance splitting its subtrees, and the children
+	private final int[] vantage;
+	private final double[] radius;
+	private final int[] inside;
+	private final int[] outside;
+	private final int root;
+	private int nodes = 0;
+	// Rows appended to the database after the tree was built are compared one by one
+	private final int builtRows;
+
+	/**
+	 * Builds a tree over every profile in a database
+	 *
+	 * @param database The database of profiles to index
+	 * @param weights The weight of each STR column in the distance, or null to weigh every column equally
+	 */
+	public VPTree(STRDatabase database, double[] weights) {
+		int numRepeats = database.getRepeats().length;
+		if(weights != null) {
+			if(weights.length != numRepeats) {
+				throw new IllegalArgumentException("Expected " + numRepeats + " weights but got " + weights.length);
+			}
+			for(double w : weights) {
+				if(!(w >= 0)) {
+					throw new IllegalArgumentException("Distance weights must not be negative: " + Arrays.toString(weights));
+				}
+			}
+		}
+		this.database = database;
+		if(weights == null) {
+			weights = new double[numRepeats];
+			Arrays.fill(weights, 1);
+		}
+		this.weights = weights;
+
+		int rows = database.size();
+		this.builtRows = rows;
+		this.vantage = new int[rows];
+		this.radius = new double[rows];
+		this.inside = new int[rows];
+		this.outside = new int[rows];
+
+		int[] ids = new int[rows];
+		for(int i = 0; i < rows; i++) {
+			ids[i] = i;
+		}
+		this.root = build(ids, new double[rows], 0, rows, new Random(rows));
+	}
+
+	/**
+	 * Finds the people nearest to a set of STR counts
+	 *
+	 * @param repeatCounts The number of each STR found in the queried sequence
+	 * @param k The greatest number of people to return
+	 * @param distances An array that receives the distance to each returned person, with at least as many elements
+	 *                  as the smaller of k and the number of people in the database
+	 * @return The ids of the nearest people, closest first, with ties broken by id
+	 */
+	public int[] nearest(int[] repeatCounts, int k, double[] distances) {
+		if(k <= 0) {
+			throw new IllegalArgumentException("Number of neighbours must be positive: " + k);
+		}
+		// No more people can be returned than are in the database, so k alone never sizes the heap
+		k = Math.min(k, Math.max(this.database.liveSize(), 1));
+		Neighbours best = new Neighbours(k);
+		search(this.root, repeatCounts, best);
+		for(int row = this.builtRows; row < this.database.size(); row++) {
+			if(!this.database.isDeleted(row)) {
+				best.offer(row, distance(row, repeatCounts));
+			}
+		}
+		return best.sorted(distances);
+	}
+
+	/**
+	 * Returns the number of rows appended to the database since the tree was built, which are not in the tree
+	 * and must be compared one by one. Rebuilding the tree is worthwhile once this grows large.
+	 *
+	 * @return A whole number of rows
+	 */
+	public int getPendingRows() {
+		return this.database.size() - this.builtRows;
+	}
+
+	/**
+	 * Computes the distance between a person's profile and a set of STR counts
+	 *
+	 * @param row The id of the person
+	 * @param repeatCounts The STR counts to compare against
+	 * @return The (weighted) sum of absolute differences between the counts
+	 */
+	public double distance(int row, int[] repeatCounts) {
+		double sum = 0;
+		for(int c = 0; c < this.weights.length; c++) {
+			sum += this.weights[c] * Math.abs(this.database.getColumn(c).get(row) - repeatCounts[c]);
+		}
+		return sum;
+	}
+
+	private double distance(int a, int b) {
+		double sum = 0;
+		for(int c = 0; c < this.weights.length; c++) {
+			CountColumn column = this.database.getColumn(c);
+			sum += this.weights[c] * Math.abs(column.get(a) - column.get(b));
+		}
+		return sum;
+	}
+
+	/**
+	 * Builds the subtree over ids[from, to) and returns its node index
+	 */
+	private int build(int[] ids, double[] dist, int from, int to, Random random) {
+		if(from >= to) {
+			return NONE;
+		}
+		// Move a random vantage point to the front of the range
+		swap(ids, dist, from, from + random.nextInt(to - from));
+		int node = this.nodes++;
+		int point = ids[from];
+		this.vantage[node] = point;
+		if(to - from == 1) {
+			this.inside[node] = NONE;
+			this.outside[node] = NONE;
+			return node;
+		}
+
+		for(int i = from + 1; i < to; i++) {
+			dist[i] = distance(point, ids[i]);
+		}
+		// Partition the rest around the median distance: closer points inside, farther points outside
+		int median = (from + 1 + to) >>> 1;
+		select(ids, dist, from + 1, to - 1, median);
+		this.radius[node] = dist[median];
+		this.inside[node] = build(ids, dist, from + 1, median, random);
+		this.outside[node] = build(ids, dist, median, to, random);
+		return node;
+	}
+
+	private void search(int node, int[] repeatCounts, Neighbours best) {
+		if(node == NONE) {
+			return;
+		}
+		double d = distance(this.vantage[node], repeatCounts);
+		// Removed people still guide the search, but are never returned
+		if(!this.database.isDeleted(this.vantage[node])) {
+			best.offer(this.vantage[node], d);
+		}
+
+		double r = this.radius[node];
+		double slack = EPSILON * (d + r);
+		// Visit the side the query falls on first, then the other side only if it could hold something closer
+		if(d < r) {
+			search(this.inside[node], repeatCounts, best);
+			if(d + best.bound() + slack >= r) {
+				search(this.outside[node], repeatCounts, best);
+			}
+		} else {
+			search(this.outside[node], repeatCounts, best);
+			if(d - best.bound() - slack <= r) {
+				search(this.inside[node], repeatCounts, best);
+			}
+		}
+	}
+
+	/**
+	 * Quickselect over ids[lo..hi] by distance, leaving the element of rank target in place
+	 */
+	private static void select(int[] ids, double[] dist, int lo, int hi, int target) {
+		while(lo < hi) {
+			double pivot = dist[(lo + hi) >>> 1];
+			int i = lo;
+			int j = hi;
+			while(i <= j) {
+				while(dist[i] < pivot) {
+					i++;
+				}
+				while(dist[j] > pivot) {
+					j--;
+				}
+				if(i <= j) {
+					swap(ids, dist, i++, j--);
+				}
+			}
+			if(target <= j) {
+				hi = j;
+			} else if(target >= i) {
+				lo = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private static void swap(int[] ids, double[] dist, int i, int j) {
+		int id = ids[i];
+		ids[i] = ids[j];
+		ids[j] = id;
+		double d = dist[i];
+		dist[i] = dist[j];
+		dist[j] = d;
+	}
+
+	/**
+	 * Bounded max-heap of the k nearest people found so far, with the farthest at the root
+	 */
+	private static final class Neighbours {
+
+		private final int k;
+		private final int[] rows;
+		private final double[] dist;
+		private int size = 0;
+
+		private Neighbours(int k) {
+			this.k = k;
+			this.rows = new int[k];
+			this.dist = new double[k];
+		}
+
+		/**
+		 * The distance a person must beat to be kept, or infinity while fewer than k have been found
+		 */
+		private double bound() {
+			return this.size < this.k ? Double.POSITIVE_INFINITY : this.dist[0];
+		}
+
+		private void offer(int row, double d) {
+			if(this.size < this.k) {
+				this.rows[this.size] = row;
+				this.dist[this.size] = d;
+				int i = this.size++;
+				while(i > 0 && farther((i - 1) / 2, i) < 0) {
+					swap(this.rows, this.dist, i, (i - 1) / 2);
+					i = (i - 1) / 2;
+				}
+			} else if(d < this.dist[0] || (d == this.dist[0] && row < this.rows[0])) {
+				this.rows[0] = row;
+				this.dist[0] = d;
+				int i = 0;
+				while(true) {
+					int largest = i;
+					int left = 2 * i + 1;
+					int right = left + 1;
+					if(left < this.size && farther(left, largest) > 0) {
+						largest = left;
+					}
+					if(right < this.size && farther(right, largest) > 0) {
+						largest = right;
+					}
+					if(largest == i) {
+						break;
+					}
+					swap(this.rows, this.dist, i, largest);
+					i = largest;
+				}
+			}
+		}
+
+		/**
+		 * Compares two heap entries, where a positive result means entry a ranks farther than entry b
+		 */
+		private int farther(int a, int b) {
+			int byDistance = Double.compare(this.dist[a], this.dist[b]);
+			return byDistance != 0 ? byDistance : Integer.compare(this.rows[a], this.rows[b]);
+		}
+
+		private int[] sorted(double[] distances) {
+			Integer[] order = new Integer[this.size];
+			for(int i = 0; i < this.size; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, (a, b) -> farther(a, b));
+			int[] result = new int[this.size];
+			for(int i = 0; i < this.size; i++) {
+				result[i] = this.rows[order[i]];
+				distances[i] = this.dist[order[i]];
+			}
+			return result;
+		}
+	}
+
+}
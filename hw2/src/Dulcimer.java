@@ -1,4 +1,5 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Class that models a dulcimer. Currently, only the bass strings are represented.
@@ -8,6 +9,9 @@ import java.util.ArrayList;
  */
 public class Dulcimer {
     public ArrayList<DulcimerString> baseStrings;
+    // strings still sounding, the only ones the mixer visits
+    private final ArrayList<DulcimerString> voices = new ArrayList<>();
+    private int polyphony;
 
     /**
      * Constructs a Dulcimer with the specified bass strings.
@@ -18,16 +22,78 @@ public class Dulcimer {
         for (String str : bassNotes.split("\\s+")) {
             this.baseStrings.add(new DulcimerString(str));
         }
+        this.polyphony = this.baseStrings.size();
+    }
+
+    /**
+     * Limits how many strings may sound at once, which bounds the work of mixing
+     * however many strings are hammered. When a string is hammered while the limit
+     * is reached, the quietest sounding string is silenced to make room for it.
+     *   @param polyphony the most strings that may sound at once, at least 1
+     */
+    public void setPolyphony(int polyphony) {
+        if (polyphony < 1) {
+            throw new IllegalArgumentException("Polyphony must be at least 1");
+        }
+        this.polyphony = polyphony;
+        while (this.voices.size() > polyphony) {
+            steal();
+        }
+    }
+
+    /**
+     * Returns the number of strings currently sounding.
+     *   @return the number of active voices
+     */
+    public int getActiveVoices() {
+        return this.voices.size();
     }
     
+    /**
+     * Finds the string tuned to a note.
+     *   @param note the note, where +/- displaces octave, e.g. "C", "A#", "D#+"
+     *   @return the string number (starting at the bottom with 0), or -1 if no string plays the note
+     */
+    public int indexOf(String note) {
+        for (int i = 0; i < this.baseStrings.size(); i++) {
+            if (this.baseStrings.get(i).getNote().equals(note)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Strikes the specified string and sets it to vibrating.
      *   @param stringNum the string number (starting at the bottom with 0)
      */
     public void hammer(int stringNum) {
         if (stringNum >= 0 && stringNum < this.baseStrings.size()) {
-            this.baseStrings.get(stringNum).strike();
+            DulcimerString string = this.baseStrings.get(stringNum);
+            if (!this.voices.contains(string)) {
+                if (this.voices.size() >= this.polyphony) {
+                    steal();
+                }
+                this.voices.add(string);
+            }
+            string.strike();
+        }
+    }
+
+    // silences the quietest sounding string, to free its voice
+    private void steal() {
+        int quietest = 0;
+        for (int i = 1; i < this.voices.size(); i++) {
+            if (this.voices.get(i).getLevel() < this.voices.get(quietest).getLevel()) {
+                quietest = i;
+            }
         }
+        this.voices.remove(quietest).silence();
+    }
+
+    // forgets strings that have fallen silent, so the mixer no longer visits them
+    private void retire() {
+        this.voices.removeIf(voice -> !voice.isActive());
     }
 
     /**
@@ -35,9 +101,23 @@ public class Dulcimer {
      */
     public void play() {
         double combinedFrequencies = 0.0;
-        for(DulcimerString baseString : this.baseStrings) {
+        for(DulcimerString baseString : this.voices) {
             combinedFrequencies += baseString.sample();
         }
+        retire();
         StdAudio.play(combinedFrequencies);
     }
+
+    /**
+     * Renders the sounds corresponding to all of the struck strings for a block of frames.
+     *   @param out the block to fill; any earlier contents of its first frames are overwritten
+     *   @param frames the number of frames to render, from the start of the block
+     */
+    public void render(float[] out, int frames) {
+        Arrays.fill(out, 0, frames, 0.0f);
+        for (DulcimerString baseString : this.voices) {
+            baseString.render(out, frames);
+        }
+        retire();
+    }
 }
@@ -7,14 +7,32 @@ import java.awt.Font;
  * @version 1.0
  */
 public class DulcimerDriver {
-    public static void main(String[] args) {
+    // frames rendered at a time by the audio thread; 256 frames is under 6 ms of audio
+    private static final int BLOCK_FRAMES = 256;
+    // how long the main thread sleeps between checks for typed keys
+    private static final long POLL_MILLIS = 2;
+
+    private static final String TREBLE1_NOTES = "C+ C#+ D+  D#+ E+  F+  F#+ G+  G#+ A+  A#+  B+";
+    private static final String TREBLE2_NOTES = "C  C#  D   D#  E   F   F#  G   G#  A   A#  B";
+    private static final String BASS_NOTES = "C- C#- D-  D#- E-  F-  F#- G-  G#- A-  A#- B-";
+
+    /**
+     * Constructs a dulcimer with the strings mapped to the keyboard, the first treble
+     * course first and the bass course last.
+     *   @return a new dulcimer with every string at rest
+     */
+    static Dulcimer newDulcimer() {
+        return new Dulcimer(TREBLE1_NOTES + " " + TREBLE2_NOTES + " " + BASS_NOTES);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
         String treble1Keys = "1   2   3   4   5   6   7   8   9   0   -   =";
-        String treble1Notes = "C+ C#+ D+  D#+ E+  F+  F#+ G+  G#+ A+  A#+  B+";
+        String treble1Notes = TREBLE1_NOTES;
         String treble2Keys = "q   w   e   r   t   y   u   i   o   p   [   ]";
-        String treble2Notes = "C  C#  D   D#  E   F   F#  G   G#  A   A#  B";
+        String treble2Notes = TREBLE2_NOTES;
         String bassKeys = "a   s   d   f   g   h   j   k   l   ;   '  \n";
         String dashes = "--- --- --- --- --- --- --- --- --- --- --- ---";
-        String bassNotes = "C- C#- D-  D#- E-  F-  F#- G-  G#- A-  A#- B-";
+        String bassNotes = BASS_NOTES;
 
         StdDraw.setFont(new Font("Monospaced", Font.PLAIN, 12));
         StdDraw.textLeft(0.00, 1.00, "DULCIMER KEY MAPPINGS");
@@ -30,13 +48,15 @@ public class DulcimerDriver {
 
         String keys = (treble1Keys + " " + treble2Keys + " " + bassKeys).replace(" ", "");
 
-        Dulcimer dulc = new Dulcimer(treble1Notes + " " + treble2Notes + " " + bassNotes);
+        Dulcimer dulc = newDulcimer();
+        DulcimerPlayer player = new DulcimerPlayer(dulc, BLOCK_FRAMES);
+        player.start();
         while(true) {
-            if(StdDraw.hasNextKeyTyped()) {
+            while(StdDraw.hasNextKeyTyped()) {
                 int typed = keys.indexOf(StdDraw.nextKeyTyped());
-                dulc.hammer(typed);
+                player.hammer(typed);
             }
-            dulc.play();
+            Thread.sleep(POLL_MILLIS);
         }
     }
 }
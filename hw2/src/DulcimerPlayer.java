@@ -0,0 +1,83 @@
+/**
+ * Plays a dulcimer live on its own audio thread. The thread renders the dulcimer a
+ * block at a time into standard audio, which holds it back once the sound card's
+ * buffer is full. Hammer events from other threads reach it through a lock-free
+ * {@link HammerQueue}, so handling input never delays the audio.
+ * <p>
+ * Once started, the dulcimer must only be used by the audio thread.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class DulcimerPlayer implements Runnable {
+    private static final int QUEUE_CAPACITY = 256;
+
+    private final Dulcimer dulcimer;
+    private final int blockFrames;
+    private final HammerQueue hammers = new HammerQueue(QUEUE_CAPACITY);
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Constructs a player for a dulcimer. Nothing is played until the player is started.
+     *   @param dulcimer the dulcimer to play
+     *   @param blockFrames the number of frames rendered at a time
+     */
+    public DulcimerPlayer(Dulcimer dulcimer, int blockFrames) {
+        this.dulcimer = dulcimer;
+        this.blockFrames = blockFrames;
+    }
+
+    /**
+     * Starts the audio thread.
+     */
+    public synchronized void start() {
+        if (this.thread != null) {
+            throw new IllegalStateException("The player has already been started");
+        }
+        this.running = true;
+        this.thread = new Thread(this, "dulcimer-audio");
+        this.thread.setDaemon(true);
+        this.thread.setPriority(Thread.MAX_PRIORITY);
+        this.thread.start();
+    }
+
+    /**
+     * Strikes a string at the start of the next block rendered. Must only be called
+     * from one thread at a time, such as the thread reading the keyboard.
+     *   @param stringNum the string number (starting at the bottom with 0)
+     *   @return false if too many strikes are already waiting and this one was dropped
+     */
+    public boolean hammer(int stringNum) {
+        return stringNum >= 0 && this.hammers.offer(stringNum);
+    }
+
+    /**
+     * Stops the audio thread once it finishes its current block, and waits for it.
+     *   @throws InterruptedException if interrupted while waiting
+     */
+    public void stop() throws InterruptedException {
+        Thread playing;
+        synchronized (this) {
+            playing = this.thread;
+        }
+        this.running = false;
+        if (playing != null) {
+            playing.join();
+        }
+        StdAudio.close();
+    }
+
+    @Override
+    public void run() {
+        float[] block = new float[this.blockFrames];
+        while (this.running) {
+            int stringNum;
+            while ((stringNum = this.hammers.poll()) >= 0) {
+                this.dulcimer.hammer(stringNum);
+            }
+            this.dulcimer.render(block, this.blockFrames);
+            StdAudio.play(block, this.blockFrames);
+        }
+    }
+}
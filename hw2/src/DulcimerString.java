@@ -10,9 +10,19 @@ public class DulcimerString {
 
 	private final static List<String> NOTES = List.of("C,C#,D,D#,E,F,F#,G,G#,A,A#,B".split(","));
 	private final static Random r = new Random();
+	// Volume decay applied while averaging two neighbouring samples
+	private final static double DECAY = 0.996 / 2;
+	// A string whose samples stay below the smallest step of 16-bit audio for a whole period has fallen silent
+	private final static double SILENCE = 1.0 / 32768;
 
 	private final String note;
-	private final Queue<Double> soundData;
+	// Karplus-Strong delay line as a ring buffer; the oldest sample is at index position
+	private final double[] soundData;
+	private int position = 0;
+	// Largest sample read since the delay line last wrapped, and over the last whole period
+	private double peak = 0.0;
+	private double level = 0.0;
+	private boolean active = false;
 
 	/**
 	 * Creates an instance of a dulcimer string model for a particular note.
@@ -31,36 +41,126 @@ public class DulcimerString {
 		int sampleLength = (int) Math.round(
 			StdAudio.SAMPLE_RATE * Math.pow(2, (22.0- offset)/12) / 440
 		);
-		this.soundData = new LinkedList<>(Collections.nCopies(sampleLength, 0.0));
+		this.soundData = new double[Math.max(sampleLength, 1)];
 	}
 
 	/**
-	 * Samples the string by polling the first sound double in the queue and adding a decayed sound double to the end
-	 * of the queue.
+	 * Samples the string by taking the oldest sound double in the delay line and replacing it with a decayed sound
+	 * double, which becomes the newest. No objects are allocated, so steady playback creates no garbage.
+	 * Once the string has fallen silent it is no longer advanced, and every sample is 0.
 	 *
-	 * @return The sound double at the front of the queue.
+	 * @return The oldest sound double in the delay line.
 	 */
 	public double sample() {
-		Double sample = soundData.poll();
-		Double next = soundData.peek();
-		if(sample == null || next == null) {
-			// Queue is empty for some reason, abort to avoid NPE.
-			System.err.println("Warning: Dulcimer string queue is empty!");
+		if(!active) {
 			return 0.0;
 		}
-		// Volume decay
-		soundData.add(0.996 / 2 * (sample + next));
+		int length = soundData.length;
+		double sample = soundData[position];
+		int next = position + 1 == length ? 0 : position + 1;
+		// Volume decay; the slot just read is the end of the line
+		soundData[position] = DECAY * (sample + soundData[next]);
+		peak = Math.max(peak, Math.abs(sample));
+		position = next;
+		if(next == 0) {
+			endPeriod();
+		}
 		return sample;
 	}
 
 	/**
-	 * Strike the dulcimer string, filling the queue with random data.
+	 * Samples the string for a block of frames at once, adding each sample to the block so that several strings can
+	 * be mixed into the same block. This gives the same samples as calling {@link #sample()} once per frame, but
+	 * splits the block into runs that never wrap around the delay line, so each run is a single tight loop.
+	 * If the string falls silent partway through, the rest of the block is left as it is.
+	 *
+	 * @param out The block to add the samples to
+	 * @param frames The number of frames to render, from the start of the block
+	 */
+	public void render(float[] out, int frames) {
+		double[] data = soundData;
+		int length = data.length;
+		int pos = position;
+		double peak = this.peak;
+		int i = 0;
+		while(active && i < frames) {
+			// Frames until the slot after pos would wrap to the start of the line
+			int run = Math.min(frames - i, length - 1 - pos);
+			for(int k = 0; k < run; k++) {
+				double sample = data[pos + k];
+				data[pos + k] = DECAY * (sample + data[pos + k + 1]);
+				out[i + k] += (float) sample;
+				peak = Math.max(peak, Math.abs(sample));
+			}
+			i += run;
+			pos += run;
+			if(i < frames) {
+				// pos is the last slot, whose neighbour is the first
+				double sample = data[pos];
+				data[pos] = DECAY * (sample + data[0]);
+				out[i++] += (float) sample;
+				pos = 0;
+				this.peak = Math.max(peak, Math.abs(sample));
+				endPeriod();
+				peak = 0.0;
+			}
+		}
+		position = pos;
+		this.peak = peak;
+	}
+
+	/**
+	 * Checks whether a whole period was quiet enough for the string to fall silent, once the delay line wraps
+	 */
+	private void endPeriod() {
+		level = peak;
+		peak = 0.0;
+		if(level < SILENCE) {
+			active = false;
+		}
+	}
+
+	/**
+	 * Strike the dulcimer string, filling the delay line with random data.
 	 */
 	public void strike() {
-		for(int i = 0; i < soundData.size(); i++) {
-			soundData.poll();
-			soundData.add(r.nextDouble() - 0.5);
+		for(int i = 0; i < soundData.length; i++) {
+			soundData[i] = r.nextDouble() - 0.5;
 		}
+		position = 0;
+		peak = 0.0;
+		level = 0.5;
+		active = true;
+	}
+
+	/**
+	 * Stop the dulcimer string at once, as if it had been damped.
+	 */
+	public void silence() {
+		Arrays.fill(soundData, 0.0);
+		position = 0;
+		peak = 0.0;
+		level = 0.0;
+		active = false;
+	}
+
+	/**
+	 * Whether the string is still sounding. A string is active from when it is struck until its samples stay
+	 * below the smallest step of 16-bit audio for a whole period.
+	 *
+	 * @return true if the string has not yet fallen silent
+	 */
+	public boolean isActive() {
+		return active;
+	}
+
+	/**
+	 * Get how loud the string currently is
+	 *
+	 * @return The largest sample over the last whole period of the string, or 0 if it is silent
+	 */
+	public double getLevel() {
+		return active ? level : 0.0;
 	}
 
 	/**
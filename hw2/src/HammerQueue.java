@@ -0,0 +1,58 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free queue of hammered string numbers, passed from one producer thread to one consumer thread.
+ * Neither side ever blocks or takes a lock, so the thread reading the keyboard can never hold up the audio thread.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class HammerQueue {
+    private final int[] events;
+    private final int mask;
+    // the next slot to read, written only by the consumer
+    private final AtomicInteger head = new AtomicInteger();
+    // the next slot to write, written only by the producer
+    private final AtomicInteger tail = new AtomicInteger();
+
+    /**
+     * Constructs an empty queue.
+     *   @param capacity the most events the queue can hold, rounded up to a power of two
+     */
+    public HammerQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 1) - 1) << 1;
+        this.events = new int[Math.max(size, 1)];
+        this.mask = this.events.length - 1;
+    }
+
+    /**
+     * Adds a hammered string to the queue. Called only from the producer thread.
+     *   @param stringNum the string number, at least 0
+     *   @return false if the queue is full and the event was dropped
+     */
+    public boolean offer(int stringNum) {
+        int t = this.tail.get();
+        if (t - this.head.getAcquire() == this.events.length) {
+            return false;
+        }
+        this.events[t & this.mask] = stringNum;
+        // publishes the event to the consumer
+        this.tail.setRelease(t + 1);
+        return true;
+    }
+
+    /**
+     * Removes the oldest hammered string from the queue. Called only from the consumer thread.
+     *   @return the string number, or -1 if the queue is empty
+     */
+    public int poll() {
+        int h = this.head.get();
+        if (h == this.tail.getAcquire()) {
+            return -1;
+        }
+        int stringNum = this.events[h & this.mask];
+        // frees the slot for the producer
+        this.head.setRelease(h + 1);
+        return stringNum;
+    }
+}
@@ -0,0 +1,245 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+/**
+ * Renders a score of hammer strikes on the keyboard dulcimer to a .wav file, as fast
+ * as the processor allows rather than in real time. No sound card or window is needed.
+ * <p>
+ * A score is either a standard MIDI file (.mid or .midi) or a text file with one strike
+ * per line: the time in seconds, then either a string number (starting with 0 for the
+ * lowest string of the first treble course, as in {@link DulcimerDriver}) or a note
+ * such as "C#+". Blank lines and lines starting with # are ignored. In a MIDI file,
+ * middle C is the note "C", and notes the dulcimer cannot play are skipped.
+ * <p>
+ * Usage: {@code java ScoreRenderer <score> <output.wav>}
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class ScoreRenderer {
+    private static final int BLOCK_FRAMES = 512;
+    private static final String[] NOTE_NAMES = "C,C#,D,D#,E,F,F#,G,G#,A,A#,B".split(",");
+    private static final int MIDDLE_C = 60;
+    private static final int MIDI_TEMPO = 0x51;
+    // microseconds per quarter note when a MIDI file sets no tempo
+    private static final int DEFAULT_TEMPO = 500000;
+    // each strike is packed into one long as (frame << STRING_BITS) | string number, so sorting orders by time
+    private static final int STRING_BITS = 16;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java ScoreRenderer <score.txt|score.mid> <output.wav>");
+            System.exit(1);
+        }
+        Path score = Paths.get(args[0]);
+        Dulcimer dulc = DulcimerDriver.newDulcimer();
+
+        long start = System.nanoTime();
+        long[] strikes;
+        try {
+            String name = score.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".mid") || name.endsWith(".midi")) {
+                strikes = readMidi(score, dulc);
+            } else {
+                strikes = readText(score, dulc);
+            }
+        } catch (InvalidMidiDataException | IllegalArgumentException e) {
+            System.err.println("Could not read " + score + ": " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        long frames = render(dulc, strikes, Paths.get(args[1]));
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        double seconds = (double) frames / StdAudio.SAMPLE_RATE;
+        System.out.printf("Rendered %d strikes, %.2f s of audio in %.3f s (%.1fx real time)%n",
+                strikes.length, seconds, elapsed, seconds / elapsed);
+    }
+
+    /**
+     * Renders strikes through a dulcimer into a .wav file, continuing after the
+     * last strike until every string has fallen silent.
+     *   @param dulc the dulcimer to play, with every string at rest
+     *   @param strikes the strikes, packed and sorted by time
+     *   @param output the .wav file to write
+     *   @return the number of frames written
+     *   @throws IOException if the file cannot be written
+     */
+    public static long render(Dulcimer dulc, long[] strikes, Path output) throws IOException {
+        float[] block = new float[BLOCK_FRAMES];
+        long frame = 0;
+        int next = 0;
+        try (WavWriter wav = new WavWriter(output, StdAudio.SAMPLE_RATE, 8 * BLOCK_FRAMES)) {
+            while (next < strikes.length || dulc.getActiveVoices() > 0) {
+                while (next < strikes.length && strikes[next] >>> STRING_BITS <= frame) {
+                    dulc.hammer((int) (strikes[next++] & ((1 << STRING_BITS) - 1)));
+                }
+                // stop the block short at the next strike, so it lands on its exact frame
+                int frames = BLOCK_FRAMES;
+                if (next < strikes.length) {
+                    frames = (int) Math.min(frames, (strikes[next] >>> STRING_BITS) - frame);
+                }
+                dulc.render(block, frames);
+                wav.write(block, frames);
+                frame += frames;
+            }
+        }
+        return frame;
+    }
+
+    /**
+     * Reads a text score.
+     *   @param score the score file
+     *   @param dulc the dulcimer whose strings the score names
+     *   @return the strikes, packed and sorted by time
+     *   @throws IOException if the file cannot be read
+     *   @throws IllegalArgumentException if a line is not a time and a string of the dulcimer
+     */
+    public static long[] readText(Path score, Dulcimer dulc) throws IOException {
+        List<String> lines = Files.readAllLines(score);
+        long[] strikes = new long[lines.size()];
+        int count = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            if (fields.length != 2) {
+                throw new IllegalArgumentException("line " + (i + 1) + " is not a time and a string");
+            }
+            double seconds;
+            try {
+                seconds = Double.parseDouble(fields[0]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("line " + (i + 1) + " has an invalid time: " + fields[0]);
+            }
+            if (!(seconds >= 0)) {
+                throw new IllegalArgumentException("line " + (i + 1) + " has a negative time");
+            }
+            int stringNum;
+            if (fields[1].matches("\\d+")) {
+                stringNum = Integer.parseInt(fields[1]);
+                if (stringNum >= dulc.baseStrings.size()) {
+                    stringNum = -1;
+                }
+            } else {
+                stringNum = dulc.indexOf(fields[1]);
+            }
+            if (stringNum < 0) {
+                throw new IllegalArgumentException("line " + (i + 1) + " names no string of the dulcimer: " + fields[1]);
+            }
+            strikes[count++] = pack(seconds, stringNum);
+        }
+        strikes = Arrays.copyOf(strikes, count);
+        Arrays.sort(strikes);
+        return strikes;
+    }
+
+    /**
+     * Reads a standard MIDI file, taking each note on event of every track and channel
+     * as a strike. Tempo changes are followed; velocities and note lengths are ignored,
+     * as the dulcimer always strikes at the same strength and rings until it decays.
+     *   @param score the MIDI file
+     *   @param dulc the dulcimer to play the notes on
+     *   @return the strikes, packed and sorted by time
+     *   @throws IOException if the file cannot be read
+     *   @throws InvalidMidiDataException if the file is not a MIDI file
+     */
+    public static long[] readMidi(Path score, Dulcimer dulc) throws IOException, InvalidMidiDataException {
+        Sequence sequence = MidiSystem.getSequence(score.toFile());
+
+        // merge every track into one list of note on and tempo events, in order of tick
+        int total = 0;
+        for (Track track : sequence.getTracks()) {
+            total += track.size();
+        }
+        MidiEvent[] events = new MidiEvent[total];
+        int count = 0;
+        for (Track track : sequence.getTracks()) {
+            for (int i = 0; i < track.size(); i++) {
+                MidiEvent event = track.get(i);
+                if (isNoteOn(event.getMessage()) || isTempo(event.getMessage())) {
+                    events[count++] = event;
+                }
+            }
+        }
+        // a stable sort, so a tempo change applies to notes on the same tick of later tracks
+        Arrays.sort(events, 0, count, (a, b) -> Long.compare(a.getTick(), b.getTick()));
+
+        long[] strikes = new long[count];
+        int numStrikes = 0;
+        int skipped = 0;
+        double seconds = 0.0;
+        long tick = 0;
+        double secondsPerTick = secondsPerTick(sequence, DEFAULT_TEMPO);
+        for (int i = 0; i < count; i++) {
+            MidiMessage message = events[i].getMessage();
+            seconds += (events[i].getTick() - tick) * secondsPerTick;
+            tick = events[i].getTick();
+            if (isTempo(message)) {
+                byte[] data = ((MetaMessage) message).getData();
+                int tempo = (data[0] & 0xff) << 16 | (data[1] & 0xff) << 8 | (data[2] & 0xff);
+                secondsPerTick = secondsPerTick(sequence, tempo);
+                continue;
+            }
+            int stringNum = dulc.indexOf(noteName(((ShortMessage) message).getData1()));
+            if (stringNum < 0) {
+                skipped++;
+                continue;
+            }
+            strikes[numStrikes++] = pack(seconds, stringNum);
+        }
+        if (skipped > 0) {
+            System.err.println("Skipped " + skipped + " notes the dulcimer cannot play");
+        }
+        strikes = Arrays.copyOf(strikes, numStrikes);
+        Arrays.sort(strikes);
+        return strikes;
+    }
+
+    // the note in the form the dulcimer strings use, where +/- displaces octave from middle C
+    private static String noteName(int key) {
+        int octave = Math.floorDiv(key - MIDDLE_C, 12);
+        String displacement = (octave < 0 ? "-" : "+").repeat(Math.abs(octave));
+        return NOTE_NAMES[Math.floorMod(key, 12)] + displacement;
+    }
+
+    private static double secondsPerTick(Sequence sequence, int tempo) {
+        if (sequence.getDivisionType() == Sequence.PPQ) {
+            return tempo / 1e6 / sequence.getResolution();
+        }
+        // SMPTE timing counts ticks per frame, whatever the tempo
+        return 1.0 / (sequence.getDivisionType() * sequence.getResolution());
+    }
+
+    private static boolean isNoteOn(MidiMessage message) {
+        return message instanceof ShortMessage
+                && ((ShortMessage) message).getCommand() == ShortMessage.NOTE_ON
+                && ((ShortMessage) message).getData2() > 0;
+    }
+
+    private static boolean isTempo(MidiMessage message) {
+        return message instanceof MetaMessage
+                && ((MetaMessage) message).getType() == MIDI_TEMPO
+                && ((MetaMessage) message).getData().length >= 3;
+    }
+
+    private static long pack(double seconds, int stringNum) {
+        long frame = Math.round(seconds * StdAudio.SAMPLE_RATE);
+        return frame << STRING_BITS | stringNum;
+    }
+}
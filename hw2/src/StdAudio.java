@@ -115,6 +115,34 @@ public final class StdAudio {
         }
     }
 
+    /**
+     * Write a block of samples (between -1.0 and +1.0) to standard audio. If a sample
+     * is outside the range, it will be clipped. The samples are converted straight into
+     * the internal buffer, so a whole block costs one call rather than one per sample.
+     */
+    public static void play(float[] input, int frames) {
+        int i = 0;
+        while (i < frames) {
+            // convert as many samples as fit in the rest of the internal buffer
+            int n = Math.min(frames - i, (buffer.length - bufferSize) / BYTES_PER_SAMPLE);
+            for (int k = 0; k < n; k++) {
+                float in = input[i + k];
+                if (in < -1.0f) in = -1.0f;
+                if (in > +1.0f) in = +1.0f;
+                short s = (short) (MAX_16_BIT * in);
+                buffer[bufferSize++] = (byte) s;
+                buffer[bufferSize++] = (byte) (s >> 8);   // little Endian
+            }
+            i += n;
+
+            // send to sound card if buffer is full
+            if (bufferSize >= buffer.length) {
+                line.write(buffer, 0, buffer.length);
+                bufferSize = 0;
+            }
+        }
+    }
+
     /**
      * Read audio samples from a file (in .wav or .au format) and return them as a double array
      * with values between -1.0 and +1.0.
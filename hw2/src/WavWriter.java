@@ -0,0 +1,104 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams 16-bit monaural audio to a .wav file as it is rendered, so audio of any
+ * length can be written without holding it all in memory. The header is written
+ * first with empty sizes, which are filled in when the writer is closed.
+ *
+ * @author Eli Blaney
+ * @version 1.0
+ */
+public class WavWriter implements Closeable {
+    private static final int HEADER_BYTES = 44;
+    private static final int BYTES_PER_SAMPLE = 2;
+    private static final double MAX_16_BIT = Short.MAX_VALUE;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long dataBytes = 0;
+
+    /**
+     * Creates (or replaces) a .wav file and writes its header.
+     *   @param path the file to write
+     *   @param sampleRate the number of samples per second
+     *   @param bufferFrames the number of samples converted before each write to the file
+     *   @throws IOException if the file cannot be created
+     */
+    public WavWriter(Path path, int sampleRate, int bufferFrames) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferFrames * BYTES_PER_SAMPLE, HEADER_BYTES))
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        this.buffer.putInt(0x46464952);                          // "RIFF"
+        this.buffer.putInt(0);                                   // file size less 8, filled in on close
+        this.buffer.putInt(0x45564157);                          // "WAVE"
+        this.buffer.putInt(0x20746d66);                          // "fmt "
+        this.buffer.putInt(16);                                  // size of the format chunk
+        this.buffer.putShort((short) 1);                         // signed PCM
+        this.buffer.putShort((short) 1);                         // mono
+        this.buffer.putInt(sampleRate);
+        this.buffer.putInt(sampleRate * BYTES_PER_SAMPLE);       // bytes per second
+        this.buffer.putShort((short) BYTES_PER_SAMPLE);          // bytes per frame
+        this.buffer.putShort((short) (8 * BYTES_PER_SAMPLE));    // bits per sample
+        this.buffer.putInt(0x61746164);                          // "data"
+        this.buffer.putInt(0);                                   // data size, filled in on close
+        flush();
+    }
+
+    /**
+     * Writes a block of samples (between -1.0 and +1.0). If a sample is outside
+     * the range, it will be clipped.
+     *   @param samples the block of samples
+     *   @param frames the number of samples to write, from the start of the block
+     *   @throws IOException if the file cannot be written
+     */
+    public void write(float[] samples, int frames) throws IOException {
+        for (int i = 0; i < frames; i++) {
+            float in = samples[i];
+            if (in < -1.0f) in = -1.0f;
+            if (in > +1.0f) in = +1.0f;
+            this.buffer.putShort((short) (MAX_16_BIT * in));
+            if (!this.buffer.hasRemaining()) {
+                flush();
+            }
+        }
+        this.dataBytes += (long) frames * BYTES_PER_SAMPLE;
+    }
+
+    /**
+     * Writes any buffered samples, fills in the sizes in the header, and closes the file.
+     *   @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            if (this.dataBytes > 0xffffffffL - HEADER_BYTES) {
+                throw new IOException("Too much audio for a .wav file");
+            }
+            ByteBuffer size = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            size.putInt(0, (int) (this.dataBytes + HEADER_BYTES - 8));
+            this.channel.write(size, 4);
+            size.clear();
+            size.putInt(0, (int) this.dataBytes);
+            this.channel.write(size, HEADER_BYTES - 4);
+        } finally {
+            this.channel.close();
+        }
+    }
+
+    private void flush() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+}